@@ -0,0 +1,33 @@
+package ru.anakesh.test.patternplayground;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * <p>Общие помощники для бенчмарков</p>
+ */
+public final class Benchmarks {
+    /**
+     * Фиксированное зерно, чтобы входные данные совпадали между сборками.
+     */
+    public static final long SEED = 42L;
+
+    private Benchmarks() {
+    }
+
+    /**
+     * <p>Примеры паттернов пишут в stdout на каждом вызове.</p>
+     * <p>В форке бенчмарка этот вывод только мешает замеру, поэтому его глушим.</p>
+     */
+    public static void muteStdout() {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+}
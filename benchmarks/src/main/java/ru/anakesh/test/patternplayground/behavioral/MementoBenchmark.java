@@ -0,0 +1,71 @@
+package ru.anakesh.test.patternplayground.behavioral;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Снимки {@link Memento.Editor#backup()} и восстановление {@link Memento.Editor#restore(String)}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MementoBenchmark {
+    @Param({"10", "1000"})
+    public int shapes;
+
+    private Memento.Editor editor;
+    private String snapshot;
+
+    @Setup
+    public void setUp() {
+        Benchmarks.muteStdout();
+        Memento memento = new Memento();
+        editor = memento.new Editor(false);
+        Random random = new Random(Benchmarks.SEED);
+        Memento.Shape[] all = new Memento.Shape[shapes];
+        for (int i = 0; i < shapes; i++) {
+            int x = random.nextInt(500);
+            int y = random.nextInt(500);
+            if (i % 2 == 0) {
+                all[i] = memento.new Circle(x, y, 1 + random.nextInt(50), Color.RED);
+            } else {
+                all[i] = memento.new CompoundShape(
+                        memento.new Rectangle(x, y, 10, 10, Color.GREEN),
+                        memento.new Dot(x, y, Color.GREEN));
+            }
+        }
+        editor.loadShapes(all);
+        snapshot = editor.backup();
+        if (snapshot.isEmpty()) {
+            throw new IllegalStateException("Editor.backup() failed to serialize shapes");
+        }
+    }
+
+    @Benchmark
+    public String backup() {
+        return editor.backup();
+    }
+
+    @Benchmark
+    public Memento.CompoundShape restore() {
+        editor.restore(snapshot);
+        return editor.getShapes();
+    }
+}
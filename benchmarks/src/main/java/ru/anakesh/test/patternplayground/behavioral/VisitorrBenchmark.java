@@ -0,0 +1,67 @@
+package ru.anakesh.test.patternplayground.behavioral;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Экспорт дерева фигур через {@link Visitorr.XMLExportVisitor#export(Visitorr.Shape...)}.</p>
+ * <p>Каждый уровень вложенности переписывает отступы всего поддерева, так что глубина здесь важнее размера.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisitorrBenchmark {
+    @Param({"1", "4"})
+    public int depth;
+
+    @Param({"8"})
+    public int fanOut;
+
+    private Visitorr.XMLExportVisitor visitor;
+    private Visitorr.Shape root;
+    private int nextId;
+
+    @Setup
+    public void setUp() {
+        Benchmarks.muteStdout();
+        Visitorr visitorr = new Visitorr();
+        visitor = visitorr.new XMLExportVisitor();
+        root = build(visitorr, depth);
+    }
+
+    private Visitorr.Shape build(Visitorr visitorr, int level) {
+        Visitorr.CompoundShape compound = visitorr.new CompoundShape(nextId++);
+        for (int i = 0; i < fanOut; i++) {
+            if (level > 1 && i == 0) {
+                compound.add(build(visitorr, level - 1));
+            } else if (i % 3 == 0) {
+                compound.add(visitorr.new Dot(nextId++, i, i));
+            } else if (i % 3 == 1) {
+                compound.add(visitorr.new Circle(nextId++, i, i, i + 1));
+            } else {
+                compound.add(visitorr.new Rectangle(nextId++, i, i, i + 1, i + 2));
+            }
+        }
+        return compound;
+    }
+
+    @Benchmark
+    public String export() {
+        return visitor.export(root);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Один общий {@link Builder.CarDirector} на все потоки.</p>
+ * <p>{@code mixedChecked} — стресс на перетекание состояния: SUV и городская машина собираются одним строителем
+ * вперемешку, и каждая проверяется. Если параметры SUV просочатся в городскую машину (или наоборот),
+ * бенчмарк упадёт с {@link IllegalStateException}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class BuilderBenchmark {
+    private Builder.CarDirector director;
+
+    @Setup
+    public void setUp() {
+        director = new Builder().new CarDirector();
+    }
+
+    @Benchmark
+    public Builder.Car constructSUVCar() {
+        return director.constructSUVCar();
+    }
+
+    @Benchmark
+    public Builder.Car mixedChecked() {
+        Builder.Car suv = director.constructSUVCar();
+        if (suv.getCarType() != Builder.CarType.SUV
+                || suv.getCarTransmission() != Builder.CarTransmission.SEMI_AUTOMATIC
+                || suv.getCarEngine().getVolume() != 2.0
+                || !"somewhere".equals(suv.getCarNavigator().getDestination())) {
+            throw new IllegalStateException("Corrupted SUV: " + suv);
+        }
+        Builder.Car city = director.constructCityCar();
+        if (city.getCarType() != Builder.CarType.CITY_CAR
+                || city.getCarEngine().getVolume() != 1.2
+                || city.getCarTransmission() != null
+                || city.getCarNavigator() != null) {
+            throw new IllegalStateException("SUV state leaked into city car: " + city);
+        }
+        return city;
+    }
+}
@@ -0,0 +1,98 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Партия заказов через {@link AbstractFactory.BulkAssembleCenter} при разной ширине пула
+ * против последовательной сборки тех же заказов в вызывающем потоке.</p>
+ * <p>Ускорение — отношение {@code sequential} к {@code bulk} при данном {@code parallelism};
+ * больше числа ядер машины оно не вырастет.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkAssemblyBenchmark {
+    private static final int ORDERS = 200_000;
+
+    @Param({"1", "2", "4"})
+    public int parallelism;
+
+    @Param({"true", "false"})
+    public boolean ordered;
+
+    private AbstractFactory abstractFactory;
+    private List<String> orders;
+    private Map<String, AbstractFactory.FurnitureFactory> factories;
+    private ForkJoinPool pool;
+    private AbstractFactory.BulkAssembleCenter center;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Benchmarks.muteStdout();
+        abstractFactory = new AbstractFactory();
+        Random random = new Random(Benchmarks.SEED);
+        orders = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(random.nextBoolean() ? AbstractFactory.WOOD : AbstractFactory.STONE);
+        }
+        factories = new HashMap<>();
+        factories.put(AbstractFactory.WOOD, abstractFactory.furnitureFactories.create(AbstractFactory.WOOD));
+        factories.put(AbstractFactory.STONE, abstractFactory.furnitureFactories.create(AbstractFactory.STONE));
+        pool = new ForkJoinPool(parallelism);
+        center = abstractFactory.new BulkAssembleCenter(abstractFactory.furnitureFactories, pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<AbstractFactory.FurnitureSet> sequential() {
+        List<AbstractFactory.FurnitureSet> sets = new ArrayList<>(orders.size());
+        for (String family : orders) {
+            AbstractFactory.FurnitureFactory factory = factories.get(family);
+            AbstractFactory.Sofa sofa = factory.createSofa();
+            AbstractFactory.Table table = factory.createTable();
+            sofa.assemble(message -> {
+            });
+            table.assemble(message -> {
+            });
+            sets.add(abstractFactory.new FurnitureSet(family, sofa, table));
+        }
+        return sets;
+    }
+
+    @Benchmark
+    public AbstractFactory.BulkAssembly bulk() {
+        if (ordered) {
+            return center.assemble(orders);
+        }
+        return center.assemble(orders, chunk -> {
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Агрегат по парку машин: {@code List<Car>} против {@link Builder.CarBatch}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CarBatchBenchmark {
+    @Param({"1000000"})
+    public int cars;
+
+    private List<Builder.Car> list;
+    private Builder.CarBatch batch;
+
+    @Setup
+    public void setUp() {
+        Builder builder = new Builder();
+        Builder.CarDirector director = builder.new CarDirector();
+        list = new ArrayList<>(cars);
+        batch = builder.new CarBatch(cars);
+        Builder.CarBatchBuilder batchBuilder = batch.builder();
+        for (int i = 0; i < cars; i++) {
+            if (i % 3 == 0) {
+                list.add(director.constructCityCar());
+                director.constructCityCar(batchBuilder);
+            } else {
+                list.add(director.constructSUVCar());
+                director.constructSUVCar(batchBuilder);
+            }
+        }
+    }
+
+    @Benchmark
+    public double averageSuvEngineList() {
+        double sum = 0;
+        int count = 0;
+        for (Builder.Car car : list) {
+            if (car.getCarType() == Builder.CarType.SUV && car.getCarEngine() != null) {
+                sum += car.getCarEngine().getVolume();
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    @Benchmark
+    public double averageSuvEngineBatch() {
+        return batch.averageEngineVolume(Builder.CarType.SUV);
+    }
+
+    @Benchmark
+    public double averageSuvEngineCursor() {
+        Builder.CarBatch.Cursor cursor = batch.cursor();
+        double sum = 0;
+        int count = 0;
+        while (cursor.next()) {
+            if (cursor.getCarType() == Builder.CarType.SUV && cursor.getEngineVolume() == cursor.getEngineVolume()) {
+                sum += cursor.getEngineVolume();
+                count++;
+            }
+        }
+        return sum / count;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@link CarCodec} против {@link ObjectOutputStream} на {@value #RECORDS} записях.</p>
+ * <p>Время — на одну запись. Размеры потоков печатаются в лог при подготовке.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CarCodecBenchmark {
+    static final int RECORDS = 1_000_000;
+
+    private final Builder builder = new Builder();
+    private List<Builder.Car> cars;
+    private ByteBuffer binary;
+    private ByteBuffer binaryScratch;
+    private byte[] java;
+
+    @Setup
+    public void setUp() throws IOException {
+        Builder.CarDirector director = builder.new CarDirector();
+        cars = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            cars.add(i % 3 == 0 ? director.constructCityCar() : director.constructSUVCar());
+        }
+        binaryScratch = ByteBuffer.allocateDirect(RECORDS * 32);
+        binary = ByteBuffer.allocateDirect(RECORDS * 32);
+        encode(binary);
+        ((Buffer) binary).flip();
+        java = encodeJava();
+        System.err.printf("binary: %,d bytes (%.2f B/record), ObjectOutputStream: %,d bytes (%.2f B/record)%n",
+                binary.remaining(), (double) binary.remaining() / RECORDS, java.length, (double) java.length / RECORDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int encodeBinary() {
+        ((Buffer) binaryScratch).clear();
+        return encode(binaryScratch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public double decodeBinaryFields() throws IOException {
+        CarCodec.Decoder decoder = new CarCodec.Decoder(binary.duplicate());
+        double volume = 0;
+        while (decoder.next()) {
+            volume += decoder.getEngineVolume();
+        }
+        return volume;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void decodeBinaryCars(Blackhole bh) throws IOException {
+        CarCodec.Decoder decoder = new CarCodec.Decoder(binary.duplicate());
+        while (decoder.next()) {
+            bh.consume(decoder.toCar(builder));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public byte[] encodeJava() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORDS * 64);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            for (Builder.Car car : cars) {
+                out.writeObject(car);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void decodeJava(Blackhole bh) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(java))) {
+            for (int i = 0; i < RECORDS; i++) {
+                bh.consume(in.readObject());
+            }
+        }
+    }
+
+    private int encode(ByteBuffer target) {
+        CarCodec.Encoder encoder = new CarCodec.Encoder(target);
+        for (Builder.Car car : cars) {
+            encoder.write(car);
+        }
+        return target.position();
+    }
+}
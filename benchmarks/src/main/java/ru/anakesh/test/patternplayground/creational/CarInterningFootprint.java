@@ -0,0 +1,47 @@
+package ru.anakesh.test.patternplayground.creational;
+
+/**
+ * <p>Удерживаемая куча при массовой сборке машин: обычный {@link Builder.CarDirector}
+ * против директора с {@link Builder.CarPartsInterner}.</p>
+ * <p>Это не JMH-бенчмарк — замер одноразовый и нужен большой хип:</p>
+ * <p>{@code java -Xmx4g -cp benchmarks/target/benchmarks.jar ru.anakesh.test.patternplayground.creational.CarInterningFootprint 10000000}</p>
+ */
+public class CarInterningFootprint {
+    public static void main(String[] args) {
+        int cars = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Builder builder = new Builder();
+
+        long plain = retainedBytes(builder.new CarDirector(), cars);
+        System.out.printf("plain:    %,d bytes retained (%.1f bytes/car)%n", plain, (double) plain / cars);
+
+        Builder.CarPartsInterner parts = builder.new CarPartsInterner(1024);
+        long interned = retainedBytes(builder.new CarDirector(parts), cars);
+        System.out.printf("interned: %,d bytes retained (%.1f bytes/car)%n", interned, (double) interned / cars);
+
+        System.out.printf("measured saving:  %,d bytes%n", plain - interned);
+        System.out.printf("estimated saving: %,d bytes%n", parts.getEstimatedBytesSaved());
+        System.out.printf("deduplication:    %.0f:1 (%d distinct engines, %d distinct navigators)%n",
+                parts.getDeduplicationRatio(), parts.getEngines().getDistinct(), parts.getNavigators().getDistinct());
+    }
+
+    private static long retainedBytes(Builder.CarDirector director, int cars) {
+        long before = usedHeap();
+        Builder.Car[] fleet = new Builder.Car[cars];
+        for (int i = 0; i < cars; i++) {
+            fleet[i] = (i & 1) == 0 ? director.constructSUVCar() : director.constructCityCar();
+        }
+        long after = usedHeap();
+        if (fleet[cars - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
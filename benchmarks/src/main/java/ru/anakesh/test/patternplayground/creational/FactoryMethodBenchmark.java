@@ -0,0 +1,62 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Обычная {@link FactoryMethod.ProductFabric} против {@link FactoryMethod.PooledProductFabric}.</p>
+ * <p>Скорость выделения памяти смотреть с профилировщиком: {@code -prof gc} (gc.alloc.rate.norm — байт на операцию).</p>
+ * <p>{@code workWithProduct} включает печать в заглушённый stdout, {@code create*} — только получение продукта.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryMethodBenchmark {
+    private FactoryMethod.ProductFabric plain;
+    private FactoryMethod.PooledProductFabric<FactoryMethod.FirstProduct> pooled;
+
+    @Setup
+    public void setUp() {
+        Benchmarks.muteStdout();
+        FactoryMethod factoryMethod = new FactoryMethod();
+        plain = factoryMethod.new FirstProductFabric();
+        pooled = factoryMethod.new PooledFirstProductFabric(16);
+    }
+
+    @Benchmark
+    public FactoryMethod.Product createPlain() {
+        return plain.createProduct();
+    }
+
+    @Benchmark
+    public void createPooled(Blackhole bh) {
+        FactoryMethod.FirstProduct product = pooled.acquire();
+        bh.consume(product);
+        pooled.release(product);
+    }
+
+    @Benchmark
+    public void workWithProductPlain() {
+        plain.workWithProduct();
+    }
+
+    @Benchmark
+    public void workWithProductPooled() {
+        pooled.workWithProduct();
+    }
+}
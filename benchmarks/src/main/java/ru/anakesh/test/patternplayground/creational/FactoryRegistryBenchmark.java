@@ -0,0 +1,67 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * <p>Создание фабрики: прямой {@code new}, {@link FactoryRegistry} по ключу, закешированный поставщик из реестра
+ * и рефлексивный {@link Constructor#newInstance(Object...)}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryRegistryBenchmark {
+    private FactoryMethod factoryMethod;
+    private AbstractFactory abstractFactory;
+    private Supplier<FactoryMethod.ProductFabric> cachedSupplier;
+    private Constructor<FactoryMethod.FirstProductFabric> reflectiveConstructor;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        factoryMethod = new FactoryMethod();
+        abstractFactory = new AbstractFactory();
+        cachedSupplier = factoryMethod.fabrics.supplier(FactoryMethod.FabricType.FIRST);
+        reflectiveConstructor = FactoryMethod.FirstProductFabric.class.getDeclaredConstructor(FactoryMethod.class);
+        reflectiveConstructor.setAccessible(true);
+    }
+
+    @Benchmark
+    public FactoryMethod.ProductFabric direct() {
+        return factoryMethod.new FirstProductFabric();
+    }
+
+    @Benchmark
+    public FactoryMethod.ProductFabric registryByEnum() {
+        return factoryMethod.fabrics.create(FactoryMethod.FabricType.FIRST);
+    }
+
+    @Benchmark
+    public AbstractFactory.FurnitureFactory registryByString() {
+        return abstractFactory.furnitureFactories.create(AbstractFactory.WOOD);
+    }
+
+    @Benchmark
+    public FactoryMethod.ProductFabric registryCachedSupplier() {
+        return cachedSupplier.get();
+    }
+
+    @Benchmark
+    public FactoryMethod.ProductFabric reflective() throws ReflectiveOperationException {
+        return reflectiveConstructor.newInstance(factoryMethod);
+    }
+}
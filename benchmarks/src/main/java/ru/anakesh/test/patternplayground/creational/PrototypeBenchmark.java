@@ -0,0 +1,83 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Клонирование через {@link Prototype.BundledShapeCache#get(String)} против ленивых копий
+ * {@link Prototype.BundledShapeCache#getShared(String)}.</p>
+ * <p>{@code *AndRead} — копию только читают, {@code *AndWrite} — меняют одно поле.
+ * Выделение памяти на операцию смотреть с {@code -prof gc}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrototypeBenchmark {
+    @Param({"Big green circle", "Medium blue rectangle"})
+    public String key;
+
+    private Prototype.BundledShapeCache cache;
+
+    @Setup
+    public void setUp() {
+        cache = new Prototype().new BundledShapeCache();
+    }
+
+    @Benchmark
+    public Prototype.Shape get() {
+        return cache.get(key);
+    }
+
+    @Benchmark
+    public void getAndRead(Blackhole blackhole) {
+        Prototype.Shape shape = cache.get(key);
+        blackhole.consume(shape);
+        blackhole.consume(shape.getX());
+        blackhole.consume(shape.getY());
+        blackhole.consume(shape.getColor());
+    }
+
+    @Benchmark
+    public Prototype.Shape getAndWrite() {
+        Prototype.Shape shape = cache.get(key);
+        shape.setX(shape.getX() + 1);
+        return shape;
+    }
+
+    @Benchmark
+    public Prototype.SharedShape getShared() {
+        return cache.getShared(key);
+    }
+
+    @Benchmark
+    public void getSharedAndRead(Blackhole blackhole) {
+        Prototype.SharedShape shape = cache.getShared(key);
+        blackhole.consume(shape);
+        blackhole.consume(shape.read().getX());
+        blackhole.consume(shape.read().getY());
+        blackhole.consume(shape.read().getColor());
+    }
+
+    @Benchmark
+    public Prototype.SharedShape getSharedAndWrite() {
+        Prototype.SharedShape shape = cache.getShared(key);
+        Prototype.Shape writable = shape.write();
+        writable.setX(writable.getX() + 1);
+        return shape;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@code n} копий одного прототипа: {@code n} вызовов {@link Prototype.BundledShapeCache#get(String)}
+ * против {@link Prototype.BundledShapeCache#cloneMany} в массив и в колоночную таблицу.</p>
+ * <p>Массив и таблица переиспользуются между операциями, как арена у вызывающего.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrototypeCloneManyBenchmark {
+    private static final String KEY = "Medium blue rectangle";
+
+    @Param({"1000", "100000"})
+    public int n;
+
+    private Prototype.BundledShapeCache cache;
+    private Prototype.Shape[] shapes;
+    private Prototype.ShapeTable table;
+
+    @Setup
+    public void setUp() {
+        Prototype prototype = new Prototype();
+        cache = prototype.new BundledShapeCache();
+        shapes = new Prototype.Shape[n];
+        table = prototype.new ShapeTable(n);
+    }
+
+    @Benchmark
+    public Prototype.Shape[] getLoop() {
+        for (int i = 0; i < n; i++) {
+            shapes[i] = cache.get(KEY);
+        }
+        return shapes;
+    }
+
+    @Benchmark
+    public Prototype.Shape[] cloneManyArray() {
+        cache.cloneMany(KEY, shapes, 0, n);
+        return shapes;
+    }
+
+    @Benchmark
+    public Prototype.ShapeTable cloneManyTable() {
+        table.clear();
+        cache.cloneMany(KEY, n, table);
+        return table;
+    }
+}
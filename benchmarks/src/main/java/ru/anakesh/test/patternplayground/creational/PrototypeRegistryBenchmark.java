@@ -0,0 +1,95 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Конкурентное чтение {@link Prototype.BundledShapeCache#get(String)} на 1&ndash;32 потоках.</p>
+ * <p>{@code readWrite} — 31 читатель и один писатель, который постоянно заменяет прототип.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrototypeRegistryBenchmark {
+    private static final String KEY = "Medium blue rectangle";
+
+    private Prototype prototype;
+    private Prototype.BundledShapeCache cache;
+    private Prototype.Rectangle replacement;
+
+    @Setup
+    public void setUp() {
+        prototype = new Prototype();
+        cache = prototype.new BundledShapeCache();
+        replacement = prototype.new Rectangle();
+        replacement.setWidth(8);
+        replacement.setHeight(10);
+        replacement.setColor("Blue");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Prototype.Shape get_01() {
+        return cache.get(KEY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Prototype.Shape get_04() {
+        return cache.get(KEY);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Prototype.Shape get_08() {
+        return cache.get(KEY);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Prototype.Shape get_16() {
+        return cache.get(KEY);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Prototype.Shape get_32() {
+        return cache.get(KEY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Prototype.Shape miss_04() {
+        return cache.get("Unknown shape");
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(31)
+    public Prototype.Shape readWrite_get() {
+        return cache.get(KEY);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public Prototype.Shape readWrite_put() {
+        return cache.put(KEY, replacement);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@link ShapeCatalog}: открытие каталога и первое и повторное обращение к прототипу.</p>
+ * <p>Время {@code open} не должно расти с {@code entries}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeCatalogBenchmark {
+    @Param({"1000", "100000"})
+    public int entries;
+
+    private Prototype prototype;
+    private Path file;
+    private String[] keys;
+    private Random random;
+    private ShapeCatalog warm;
+    private ShapeCatalog cold;
+
+    @Setup
+    public void setUp() throws IOException {
+        prototype = new Prototype();
+        keys = new String[entries];
+        Map<String, Prototype.Shape> shapes = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            keys[i] = "shape-" + i;
+            Prototype.Rectangle rectangle = prototype.new Rectangle();
+            rectangle.setX(i);
+            rectangle.setY(-i);
+            rectangle.setWidth(i % 100);
+            rectangle.setHeight(i % 37);
+            rectangle.setColor(i % 2 == 0 ? "Blue" : "Green");
+            shapes.put(keys[i], rectangle);
+        }
+        file = Files.createTempFile("shapes", ".catalog");
+        ShapeCatalog.write(file, shapes);
+        random = new Random(Benchmarks.SEED);
+        warm = ShapeCatalog.open(file, prototype);
+        for (String key : keys) {
+            warm.get(key);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void reopen() throws IOException {
+        cold = ShapeCatalog.open(file, prototype);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Отображение освобождается только сборщиком мусора, так что открытие в цикле быстро исчерпало бы лимит отображений
+     * процесса — меряем по одному открытию.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 50)
+    public ShapeCatalog open() throws IOException {
+        return ShapeCatalog.open(file, prototype);
+    }
+
+    /**
+     * Первое обращение — двоичный поиск по индексу и разбор записи; к концу итерации часть ключей уже тёплые.
+     */
+    @Benchmark
+    public Prototype.Shape firstGet() {
+        return cold.get(keys[random.nextInt(entries)]);
+    }
+
+    @Benchmark
+    public Prototype.Shape warmGet() {
+        return warm.get(keys[random.nextInt(entries)]);
+    }
+}
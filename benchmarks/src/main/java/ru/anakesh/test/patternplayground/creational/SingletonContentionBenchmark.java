@@ -0,0 +1,231 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Конкурентный доступ к {@link Singleton#getInstance(String)} на 1&ndash;64 потоках.</p>
+ * <p>Для сравнения рядом лежит прежняя реализация с double-checked locking на мониторе класса:
+ * она возвращает один экземпляр на все ключи, так что отличие в цене — только механика чтения.</p>
+ * <p>{@code create_*} — промах: каждый вызов создаёт экземпляр и сразу его вытесняет, так что потоки всё время
+ * борются за создание, а при {@code keyCount = 1} — за один и тот же ключ. Для сравнения {@code createSynchronized_*}
+ * делает то же на {@link HashMap} под монитором класса — прежняя блокировка, распространённая на ключи.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingletonContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Keys {
+        @Param({"1", "1024"})
+        public int keyCount;
+
+        String[] keys;
+
+        @Setup
+        public void setUp() {
+            keys = new String[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = "key-" + i;
+                Singleton.getInstance(keys[i]);
+            }
+            DoubleCheckedSingleton.getInstance(keys[0]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final Random random = new Random(Benchmarks.SEED);
+        private int[] order;
+        private int position;
+
+        @Setup
+        public void setUp(Keys keys) {
+            order = new int[1024];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = random.nextInt(keys.keyCount);
+            }
+        }
+
+        String next(Keys keys) {
+            position = (position + 1) & (order.length - 1);
+            return keys.keys[order[position]];
+        }
+    }
+
+    /**
+     * Прежний {@link Singleton}: один volatile экземпляр, промах уходит на монитор класса.
+     */
+    static final class DoubleCheckedSingleton {
+        private static volatile DoubleCheckedSingleton instance;
+        private final String value;
+
+        private DoubleCheckedSingleton(String value) {
+            this.value = value;
+        }
+
+        static DoubleCheckedSingleton getInstance(String value) {
+            DoubleCheckedSingleton result = instance;
+            if (result != null) {
+                return result;
+            }
+            synchronized (DoubleCheckedSingleton.class) {
+                if (instance == null) {
+                    instance = new DoubleCheckedSingleton(value);
+                }
+                return instance;
+            }
+        }
+    }
+
+    /**
+     * Мультитон на {@link HashMap}, где и чтение, и создание идут под монитором класса.
+     */
+    static final class SynchronizedMultiton {
+        private static final Map<String, SynchronizedMultiton> instances = new HashMap<>();
+        private final String value;
+
+        private SynchronizedMultiton(String value) {
+            this.value = value;
+        }
+
+        static synchronized SynchronizedMultiton getInstance(String value) {
+            return instances.computeIfAbsent(value, SynchronizedMultiton::new);
+        }
+
+        static synchronized boolean evict(String value) {
+            return instances.remove(value) != null;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Singleton keyed_01(Keys keys, Cursor cursor) {
+        return Singleton.getInstance(cursor.next(keys));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public DoubleCheckedSingleton doubleChecked_01(Keys keys, Cursor cursor) {
+        return DoubleCheckedSingleton.getInstance(cursor.next(keys));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Singleton keyed_04(Keys keys, Cursor cursor) {
+        return Singleton.getInstance(cursor.next(keys));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public DoubleCheckedSingleton doubleChecked_04(Keys keys, Cursor cursor) {
+        return DoubleCheckedSingleton.getInstance(cursor.next(keys));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Singleton keyed_16(Keys keys, Cursor cursor) {
+        return Singleton.getInstance(cursor.next(keys));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public DoubleCheckedSingleton doubleChecked_16(Keys keys, Cursor cursor) {
+        return DoubleCheckedSingleton.getInstance(cursor.next(keys));
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Singleton keyed_64(Keys keys, Cursor cursor) {
+        return Singleton.getInstance(cursor.next(keys));
+    }
+
+    @Benchmark
+    @Threads(64)
+    public DoubleCheckedSingleton doubleChecked_64(Keys keys, Cursor cursor) {
+        return DoubleCheckedSingleton.getInstance(cursor.next(keys));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean create_01(Keys keys, Cursor cursor) {
+        String key = cursor.next(keys);
+        Singleton.getInstance(key);
+        return Singleton.evict(key);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean createSynchronized_01(Keys keys, Cursor cursor) {
+        String key = cursor.next(keys);
+        SynchronizedMultiton.getInstance(key);
+        return SynchronizedMultiton.evict(key);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean create_04(Keys keys, Cursor cursor) {
+        String key = cursor.next(keys);
+        Singleton.getInstance(key);
+        return Singleton.evict(key);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean createSynchronized_04(Keys keys, Cursor cursor) {
+        String key = cursor.next(keys);
+        SynchronizedMultiton.getInstance(key);
+        return SynchronizedMultiton.evict(key);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean create_16(Keys keys, Cursor cursor) {
+        String key = cursor.next(keys);
+        Singleton.getInstance(key);
+        return Singleton.evict(key);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean createSynchronized_16(Keys keys, Cursor cursor) {
+        String key = cursor.next(keys);
+        SynchronizedMultiton.getInstance(key);
+        return SynchronizedMultiton.evict(key);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean create_64(Keys keys, Cursor cursor) {
+        String key = cursor.next(keys);
+        Singleton.getInstance(key);
+        return Singleton.evict(key);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean createSynchronized_64(Keys keys, Cursor cursor) {
+        String key = cursor.next(keys);
+        SynchronizedMultiton.getInstance(key);
+        return SynchronizedMultiton.evict(key);
+    }
+}
@@ -0,0 +1,135 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Проверка колышков по одному через объекты и {@link Adapter.SquarePegAdapter}
+ * против пакетных {@link Adapter.RoundHole#fitsRound(double[])} и {@link Adapter.RoundHole#fitsSquare(double[])}.</p>
+ * <p>{@code stream*} и {@code outOfLine*} — квадратные колышки через новый адаптер на каждый и через
+ * {@link Adapter#view(Adapter.SquarePeg)}; выделение памяти смотреть с {@code -prof gc}. Пока проверка встраивается,
+ * escape-анализ сам убирает новый адаптер; {@code outOfLine*} показывают случай, когда адаптер уходит в невстроенный вызов.</p>
+ * <p>Для 100M колышков нужно {@code -Xmx4g} или больше: {@code -jvmArgsAppend -Xmx4g -p pegs=100000000}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdapterBenchmark {
+    @Param({"1000000"})
+    public int pegs;
+
+    private Adapter adapter;
+    private Adapter.RoundHole hole;
+    private double[] radii;
+    private double[] widths;
+    private Adapter.RoundPeg[] roundPegs;
+    private Adapter.SquarePeg[] squarePegs;
+
+    @Setup
+    public void setUp() {
+        adapter = new Adapter();
+        hole = adapter.new RoundHole(5);
+        Random random = new Random(Benchmarks.SEED);
+        radii = new double[pegs];
+        widths = new double[pegs];
+        roundPegs = new Adapter.RoundPeg[pegs];
+        squarePegs = new Adapter.SquarePeg[pegs];
+        for (int i = 0; i < pegs; i++) {
+            radii[i] = random.nextDouble() * 10;
+            widths[i] = random.nextDouble() * 14;
+            roundPegs[i] = adapter.new RoundPeg(radii[i]);
+            squarePegs[i] = adapter.new SquarePeg(widths[i]);
+        }
+        if (!perObjectSquare().equals(hole.fitsSquare(widths)) || !perObjectRound().equals(hole.fitsRound(radii))) {
+            throw new IllegalStateException("Batch and per-object checks disagree");
+        }
+    }
+
+    @Benchmark
+    public BitSet perObjectRound() {
+        BitSet fits = new BitSet(pegs);
+        for (int i = 0; i < pegs; i++) {
+            if (hole.fits(roundPegs[i])) {
+                fits.set(i);
+            }
+        }
+        return fits;
+    }
+
+    @Benchmark
+    public BitSet perObjectSquare() {
+        BitSet fits = new BitSet(pegs);
+        for (int i = 0; i < pegs; i++) {
+            if (hole.fits(adapter.new SquarePegAdapter(squarePegs[i]))) {
+                fits.set(i);
+            }
+        }
+        return fits;
+    }
+
+    @Benchmark
+    public long streamNewAdapter() {
+        return Arrays.stream(squarePegs).filter(peg -> hole.fits(adapter.new SquarePegAdapter(peg))).count();
+    }
+
+    @Benchmark
+    public long streamView() {
+        return Arrays.stream(squarePegs).filter(peg -> hole.fits(adapter.view(peg))).count();
+    }
+
+    @Benchmark
+    public long outOfLineNewAdapter() {
+        long count = 0;
+        for (Adapter.SquarePeg peg : squarePegs) {
+            if (fitsOutOfLine(adapter.new SquarePegAdapter(peg))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long outOfLineView() {
+        long count = 0;
+        for (Adapter.SquarePeg peg : squarePegs) {
+            if (fitsOutOfLine(adapter.view(peg))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private boolean fitsOutOfLine(Adapter.RoundPeg peg) {
+        return hole.fits(peg);
+    }
+
+    @Benchmark
+    public BitSet batchRound() {
+        return hole.fitsRound(radii);
+    }
+
+    @Benchmark
+    public BitSet batchSquare() {
+        return hole.fitsSquare(widths);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Габариты и попадание в {@link Composite.CompoundShape}.</p>
+ * <p>Дерево: группы по {@value #GROUP} фигур, вложенные в общий корень.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeBenchmark {
+    static final int GROUP = 10;
+    static final int CANVAS = 2_000;
+    static final int PROBES = 64;
+
+    @Param({"100", "10000"})
+    public int shapes;
+
+    private Composite.CompoundShape root;
+    private int[] probeX;
+    private int[] probeY;
+
+    @Setup
+    public void setUp() {
+        Composite composite = new Composite();
+        Random random = new Random(Benchmarks.SEED);
+        root = composite.new CompoundShape();
+        Composite.CompoundShape group = null;
+        for (int i = 0; i < shapes; i++) {
+            if (i % GROUP == 0) {
+                group = composite.new CompoundShape();
+                root.add(group);
+            }
+            int x = random.nextInt(CANVAS);
+            int y = random.nextInt(CANVAS);
+            switch (i % 3) {
+                case 0:
+                    group.add(composite.new Circle(x, y, 1 + random.nextInt(20), Color.RED));
+                    break;
+                case 1:
+                    group.add(composite.new Rectangle(x, y, 1 + random.nextInt(40), 1 + random.nextInt(40), Color.GREEN));
+                    break;
+                default:
+                    group.add(composite.new Dot(x, y, Color.BLUE));
+            }
+        }
+        probeX = new int[PROBES];
+        probeY = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probeX[i] = random.nextInt(CANVAS);
+            probeY[i] = random.nextInt(CANVAS);
+        }
+    }
+
+    @Benchmark
+    public void bounds(Blackhole bh) {
+        bh.consume(root.getX());
+        bh.consume(root.getY());
+        bh.consume(root.getWidth());
+        bh.consume(root.getHeight());
+    }
+
+    @Benchmark
+    public void isInsideBounds(Blackhole bh) {
+        for (int i = 0; i < PROBES; i++) {
+            bh.consume(root.isInsideBounds(probeX[i], probeY[i]));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <p>Повторная конвертация того же файла напрямую через {@link Facade.VideoConversionFacade}
+ * и через {@link ConversionCache}, где она сводится к проверке атрибутов источника и копированию готового файла.</p>
+ * <p>Источник пишется в {@code setUp} и хешируется при первом промахе; запомненным хеш становится, когда файл старше
+ * двух секунд, — это случается ещё на прогреве.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionCacheBenchmark {
+    @Param({"1", "64"})
+    public int sizeMb;
+
+    private Facade.VideoConversionFacade facade;
+    private ConversionCache cache;
+    private Path directory;
+    private Path source;
+    private Path target;
+    private Path directTarget;
+
+    @Setup
+    public void setUp() throws IOException {
+        Benchmarks.muteStdout();
+        Facade owner = new Facade();
+        facade = owner.new VideoConversionFacade();
+        directory = Files.createTempDirectory("conversion-cache");
+        cache = new ConversionCache(owner, directory.resolve("cache"), 1L << 30);
+        source = directory.resolve("video.ogg");
+        target = directory.resolve("video.mp4");
+        directTarget = directory.resolve("direct.mp4");
+        byte[] bytes = new byte[sizeMb << 20];
+        new Random(Benchmarks.SEED).nextBytes(bytes);
+        Files.write(source, bytes);
+        cache.convertVideo(source, target, "mp4");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public File direct() throws IOException {
+        return facade.convertVideo(source, directTarget, "mp4");
+    }
+
+    @Benchmark
+    public File cached() throws IOException {
+        return cache.convertVideo(source, target, "mp4");
+    }
+}
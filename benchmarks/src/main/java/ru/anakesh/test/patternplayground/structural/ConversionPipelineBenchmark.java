@@ -0,0 +1,90 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.Random;
+
+/**
+ * <p>Пакет файлов: по одному через {@link Facade.VideoConversionFacade} против {@link ConversionPipeline}
+ * с {@code threads} потоками на каждой стадии.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionPipelineBenchmark {
+    private static final int FILES = 16;
+    private static final int FILE_SIZE = 4 << 20;
+
+    @Param({"1", "2"})
+    public int threads;
+
+    private Facade.VideoConversionFacade facade;
+    private ConversionPipeline pipeline;
+    private Path directory;
+    private Path[] sources;
+    private Path[] targets;
+
+    @Setup
+    public void setUp() throws IOException {
+        Benchmarks.muteStdout();
+        Facade owner = new Facade();
+        facade = owner.new VideoConversionFacade();
+        pipeline = new ConversionPipeline(owner, threads, threads, threads, 16, Facade.VideoConversionFacade.DEFAULT_CHUNK_SIZE);
+        directory = Files.createTempDirectory("pipeline");
+        sources = new Path[FILES];
+        targets = new Path[FILES];
+        Random random = new Random(Benchmarks.SEED);
+        byte[] bytes = new byte[FILE_SIZE];
+        for (int i = 0; i < FILES; i++) {
+            random.nextBytes(bytes);
+            sources[i] = Files.write(directory.resolve("video" + i + ".ogg"), bytes);
+            targets[i] = directory.resolve("video" + i + ".mp4");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pipeline.close();
+        for (int i = 0; i < FILES; i++) {
+            Files.deleteIfExists(sources[i]);
+            Files.deleteIfExists(targets[i]);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void sequential() throws IOException {
+        for (int i = 0; i < FILES; i++) {
+            facade.convertVideo(sources[i], targets[i], "mp4");
+        }
+    }
+
+    @Benchmark
+    public void pipelined() throws IOException, InterruptedException {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[FILES];
+        for (int i = 0; i < FILES; i++) {
+            results[i] = pipeline.submit(sources[i], targets[i], "mp4");
+        }
+        CompletableFuture.allOf(results).join();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Цепочка CompressionDecorator -&gt; EncryptionDecorator -&gt; FileDataSource на запись и чтение.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoratorBenchmark {
+    @Param({"64", "16384"})
+    public int records;
+
+    private File file;
+    private String data;
+    private Decorator.DataSource chain;
+
+    @Setup
+    public void setUp() throws IOException {
+        Decorator decorator = new Decorator();
+        file = File.createTempFile("decorator-bench", ".txt");
+        chain = decorator.new CompressionDecorator(
+                decorator.new EncryptionDecorator(
+                        decorator.new FileDataSource(file.getAbsolutePath())));
+
+        Random random = new Random(Benchmarks.SEED);
+        StringBuilder sb = new StringBuilder("Name,Salary\n");
+        for (int i = 0; i < records; i++) {
+            sb.append("Employee ").append(i).append(',').append(random.nextInt(1_000_000)).append('\n');
+        }
+        data = sb.toString();
+        chain.writeData(data);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void write() {
+        chain.writeData(data);
+    }
+
+    @Benchmark
+    public String read() {
+        return chain.readData();
+    }
+}
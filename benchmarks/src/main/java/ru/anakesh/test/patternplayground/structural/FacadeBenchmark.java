@@ -0,0 +1,75 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Потоковая конвертация {@link Facade.VideoConversionFacade} файлов разного размера.</p>
+ * <p>С {@code -prof gc} выделение памяти на операцию не должно расти вместе с {@code sizeMb}.
+ * {@code passthrough} — тот же формат на выходе, копирование через {@code transferTo}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FacadeBenchmark {
+    @Param({"1", "64"})
+    public int sizeMb;
+
+    private Facade.VideoConversionFacade facade;
+    private Path directory;
+    private Path source;
+    private Path target;
+    private Path sameFormatTarget;
+
+    @Setup
+    public void setUp() throws IOException {
+        Benchmarks.muteStdout();
+        facade = new Facade().new VideoConversionFacade();
+        directory = Files.createTempDirectory("facade");
+        source = directory.resolve("video.ogg");
+        target = directory.resolve("video.mp4");
+        sameFormatTarget = directory.resolve("copy.ogg");
+        byte[] bytes = new byte[sizeMb << 20];
+        new Random(Benchmarks.SEED).nextBytes(bytes);
+        Files.write(source, bytes);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(sameFormatTarget);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public File streaming() throws IOException {
+        return facade.convertVideo(source, target, "mp4");
+    }
+
+    @Benchmark
+    public File passthrough() throws IOException {
+        return facade.convertVideo(source, sameFormatTarget, "ogg");
+    }
+}
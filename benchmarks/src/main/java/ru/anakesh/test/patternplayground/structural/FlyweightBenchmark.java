@@ -0,0 +1,65 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Посадка деревьев через {@link Flyweight.Forest#plantTree(int, int, String, Color, String)}.</p>
+ * <p>Каждый вызов сажает {@value #TREES} деревьев в новый лес, чтобы куча не росла от итерации к итерации.</p>
+ * <p>{@code getTreeType} — поиск уже созданного типа в общей таблице; запускать с {@code -t} больше 1,
+ * чтобы увидеть, что потоки не мешают друг другу.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlyweightBenchmark {
+    static final int TREES = 100_000;
+
+    private final Flyweight flyweight = new Flyweight();
+    private int[] xs;
+    private int[] ys;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(Benchmarks.SEED);
+        xs = new int[TREES];
+        ys = new int[TREES];
+        for (int i = 0; i < TREES; i++) {
+            xs[i] = random.nextInt(Flyweight.CANVAS_SIZE);
+            ys[i] = random.nextInt(Flyweight.CANVAS_SIZE);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TREES)
+    public Flyweight.Forest plantTree() {
+        Flyweight.Forest forest = flyweight.new Forest();
+        for (int i = 0; i < TREES; i += 2) {
+            forest.plantTree(xs[i], ys[i], "Summer Oak", Color.GREEN, "Oak texture stub");
+            forest.plantTree(xs[i + 1], ys[i + 1], "Autumn Oak", Color.ORANGE, "Autumn Oak texture stub");
+        }
+        return forest;
+    }
+
+    @Benchmark
+    public Flyweight.TreeType getTreeType() {
+        return Flyweight.TreeFactory.getTreeType("Summer Oak", Color.GREEN, "Oak texture stub");
+    }
+}
@@ -0,0 +1,126 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Сколько кучи занимает лес из {@code trees} деревьев в хранилищах {@link Flyweight.ObjectTreeStorage}
+ * и {@link Flyweight.ArrayTreeStorage}.</p>
+ * <p>Вызов сажает лес заново, затем после сборки мусора замеряется занятая куча; {@code bytesPerTree} —
+ * прирост относительно кучи без леса, а счётчик суммируется по итерациям, поэтому замер один. Время — посадка
+ * вместе с ростом хранилища; {@code presized} — массивы сразу нужного размера, без запаса от роста,
+ * {@code mapped} — {@link MappedTreeStorage} во временном файле.</p>
+ * <p>Для 100M деревьев: {@code -jvmArgsAppend -Xmx5g -p trees=100000000}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ForestFootprintBenchmark {
+    private static final int DISTINCT_COORDINATES = 1 << 16;
+
+    @Param({"1000000", "10000000"})
+    public int trees;
+
+    @Param({"objects", "arrays", "presized", "mapped"})
+    public String storage;
+
+    private final Flyweight flyweight = new Flyweight();
+    private int[] xs;
+    private int[] ys;
+    private long baseline;
+    private Flyweight.Forest forest;
+    private MappedTreeStorage mapped;
+    private Path file;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(Benchmarks.SEED);
+        xs = new int[DISTINCT_COORDINATES];
+        ys = new int[DISTINCT_COORDINATES];
+        for (int i = 0; i < DISTINCT_COORDINATES; i++) {
+            xs[i] = random.nextInt(Flyweight.CANVAS_SIZE);
+            ys[i] = random.nextInt(Flyweight.CANVAS_SIZE);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void collect() {
+        forest = null;
+        baseline = usedHeap();
+    }
+
+    @Benchmark
+    public Flyweight.Forest plant() throws IOException {
+        switch (storage) {
+            case "arrays":
+                forest = flyweight.new Forest(new Flyweight.ArrayTreeStorage());
+                break;
+            case "presized":
+                forest = flyweight.new Forest(new Flyweight.ArrayTreeStorage(trees));
+                break;
+            case "mapped":
+                file = Files.createTempFile("forest", ".bin");
+                Files.delete(file);
+                mapped = MappedTreeStorage.open(file);
+                forest = flyweight.new Forest(mapped);
+                break;
+            default:
+                forest = flyweight.new Forest();
+        }
+        for (int i = 0; i < trees; i += 2) {
+            int j = i & (DISTINCT_COORDINATES - 1);
+            forest.plantTree(xs[j], ys[j], "Summer Oak", Color.GREEN, "Oak texture stub");
+            forest.plantTree(xs[j + 1], ys[j + 1], "Autumn Oak", Color.ORANGE, "Autumn Oak texture stub");
+        }
+        return forest;
+    }
+
+    @TearDown(Level.Iteration)
+    public void measure(Footprint footprint) throws IOException {
+        footprint.bytesPerTree = (double) (usedHeap() - baseline) / forest.treeCount();
+        forest = null;
+        if (mapped != null) {
+            mapped.close();
+            mapped = null;
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".types"));
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public double bytesPerTree;
+    }
+}
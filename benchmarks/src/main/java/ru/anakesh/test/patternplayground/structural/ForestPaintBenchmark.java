@@ -0,0 +1,82 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Перерисовка окна {@value #VIEWPORT}×{@value #VIEWPORT} точек и поиск по лесу на холсте
+ * {@link Flyweight#CANVAS_SIZE}×{@link Flyweight#CANVAS_SIZE}, с {@link TreeGrid} и без.</p>
+ * <p>С индексом время {@code paintViewport} и {@code findTrees} растёт с числом деревьев в окне, а не со всем лесом.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForestPaintBenchmark {
+    static final int VIEWPORT = 50;
+
+    @Param({"100000", "1000000"})
+    public int trees;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private Flyweight.Forest forest;
+    private Graphics graphics;
+    private Rectangle viewport;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(Benchmarks.SEED);
+        forest = new Flyweight().new Forest(new Flyweight.ArrayTreeStorage(trees), indexed);
+        for (int i = 0; i < trees; i += 2) {
+            forest.plantTree(random.nextInt(Flyweight.CANVAS_SIZE), random.nextInt(Flyweight.CANVAS_SIZE),
+                    "Summer Oak", Color.GREEN, "Oak texture stub");
+            forest.plantTree(random.nextInt(Flyweight.CANVAS_SIZE), random.nextInt(Flyweight.CANVAS_SIZE),
+                    "Autumn Oak", Color.ORANGE, "Autumn Oak texture stub");
+        }
+        graphics = new BufferedImage(Flyweight.CANVAS_SIZE, Flyweight.CANVAS_SIZE, BufferedImage.TYPE_INT_RGB)
+                .getGraphics();
+        viewport = new Rectangle(200, 200, VIEWPORT, VIEWPORT);
+        graphics.setClip(viewport);
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void paintViewport() {
+        forest.paint(graphics);
+    }
+
+    @Benchmark
+    public int[] findTrees() {
+        return forest.findTrees(viewport);
+    }
+
+    @Benchmark
+    public int findNearestTree() {
+        return forest.findNearestTree(random.nextInt(Flyweight.CANVAS_SIZE), random.nextInt(Flyweight.CANVAS_SIZE));
+    }
+}
@@ -0,0 +1,74 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Повторное открытие леса из {@link MappedTreeStorage}.</p>
+ * <p>Время не должно расти с {@code trees}: читаются только заголовок и типы, записи лишь отображаются.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+public class MappedTreeStorageBenchmark {
+    @Param({"1000000", "100000000"})
+    public int trees;
+
+    private Path file;
+    private MappedTreeStorage reopened;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("forest", ".bin");
+        Files.delete(file);
+        Random random = new Random(Benchmarks.SEED);
+        try (MappedTreeStorage storage = MappedTreeStorage.open(file)) {
+            Flyweight.Forest forest = new Flyweight().new Forest(storage);
+            for (int i = 0; i < trees; i += 2) {
+                forest.plantTree(random.nextInt(Flyweight.CANVAS_SIZE), random.nextInt(Flyweight.CANVAS_SIZE),
+                        "Summer Oak", Color.GREEN, "Oak texture stub");
+                forest.plantTree(random.nextInt(Flyweight.CANVAS_SIZE), random.nextInt(Flyweight.CANVAS_SIZE),
+                        "Autumn Oak", Color.ORANGE, "Autumn Oak texture stub");
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeReopened() throws IOException {
+        reopened.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".types"));
+    }
+
+    @Benchmark
+    public MappedTreeStorage open() throws IOException {
+        reopened = MappedTreeStorage.open(file);
+        return reopened;
+    }
+}
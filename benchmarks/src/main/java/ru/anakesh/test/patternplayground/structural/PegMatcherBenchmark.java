@@ -0,0 +1,65 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@link PegMatcher}: столько же отверстий, сколько колышков, на пуле из {@code threads} потоков.</p>
+ * <p>При {@code threads = 1} диапазоны не делятся — это последовательный проход.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PegMatcherBenchmark {
+    @Param({"100000", "5000000"})
+    public int pegs;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private PegMatcher matcher;
+    private double[] holeRadii;
+    private double[] pegRadii;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(threads);
+        matcher = new PegMatcher(pool);
+        Random random = new Random(Benchmarks.SEED);
+        holeRadii = new double[pegs];
+        pegRadii = new double[pegs];
+        for (int i = 0; i < pegs; i++) {
+            holeRadii[i] = random.nextDouble() * 10;
+            pegRadii[i] = random.nextDouble() * 10;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public PegMatcher.Matching match() {
+        return matcher.match(holeRadii, pegRadii);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.anakesh.test.patternplayground.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Попадание в кэш {@link Proxy.YoutubeCacheProxy#getVideo(String)}.</p>
+ * <p>Промах стоит секунду искусственной сетевой задержки, поэтому меряем только прогретый кэш.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyBenchmark {
+    private static final String VIDEO_ID = "catzzzzzzzzz";
+
+    private Proxy.YoutubeCacheProxy proxy;
+
+    @Setup
+    public void setUp() {
+        Benchmarks.muteStdout();
+        proxy = new Proxy().new YoutubeCacheProxy();
+        proxy.getVideo(VIDEO_ID);
+    }
+
+    @Benchmark
+    public Proxy.Video getVideo() {
+        return proxy.getVideo(VIDEO_ID);
+    }
+}
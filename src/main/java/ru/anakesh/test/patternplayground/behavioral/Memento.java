@@ -34,7 +34,9 @@ import java.util.List;
  *     </ol>
  * </p>
  */
-public class Memento {
+public class Memento implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     public static void main(String[] args) {
         new Memento().run();
     }
@@ -103,14 +105,25 @@ public class Memento {
         private History history;
 
         public Editor() {
-            canvas = new Canvas(this);
+            this(true);
+        }
+
+        /**
+         * Редактор без окна — нужен, чтобы работать со снимками там, где нет экрана (бенчмарки, сервер).
+         */
+        Editor(boolean withCanvas) {
+            if (withCanvas) {
+                canvas = new Canvas(this);
+            }
             history = new History();
         }
 
         public void loadShapes(Shape... shapes) {
             allShapes.clear();
             allShapes.add(shapes);
-            canvas.refresh();
+            if (canvas != null) {
+                canvas.refresh();
+            }
         }
 
         public CompoundShape getShapes() {
@@ -123,12 +136,12 @@ public class Memento {
         }
 
         public void undo() {
-            if (history.undo())
+            if (history.undo() && canvas != null)
                 canvas.repaint();
         }
 
         public void redo() {
-            if (history.redo())
+            if (history.redo() && canvas != null)
                 canvas.repaint();
         }
 
@@ -1,6 +1,22 @@
 package ru.anakesh.test.patternplayground.creational;
 
+import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * <p>Абстрактная фабрика</p>
@@ -10,32 +26,55 @@ import java.time.LocalDate;
  * не привязываясь к конкретным классам создаваемых объектов</p>
  */
 public class AbstractFactory {
+    static final String WOOD = "wood";
+    static final String STONE = "stone";
+
+    /**
+     * Семейства мебели по названию. Новые семейства можно добавлять во время работы.
+     */
+    final FactoryRegistry<String, FurnitureFactory> furnitureFactories = new FactoryRegistry<>();
+
+    public AbstractFactory() {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        furnitureFactories.register(WOOD, FactoryRegistry.constructorOf(lookup, WoodFurnitureFactory.class, this));
+        furnitureFactories.register(STONE, FactoryRegistry.constructorOf(lookup, StoneFurnitureFactory.class, this));
+    }
+
     public static void main(String[] args) {
         new AbstractFactory().run();
     }
 
     private void run() {
-        FurnitureFactory furnitureFactory = determinateFurnitureFactory();
+        FurnitureFactory furnitureFactory = determinateFurnitureFactory(LocalDate.now().getDayOfMonth() % 2 == 0 ? WOOD : STONE);
         AssembleCenter assembleCenter = new AssembleCenter(furnitureFactory);
         assembleCenter.assemble();
 
     }
 
-    private FurnitureFactory determinateFurnitureFactory() {
-        int dayOfMonth = LocalDate.now().getDayOfMonth();
-        if (dayOfMonth % 2 == 0) {
-            return new WoodFurnitureFactory();
-        } else {
-            return new StoneFurnitureFactory();
-        }
+    private FurnitureFactory determinateFurnitureFactory(String family) {
+        return furnitureFactories.create(family);
     }
 
     interface Sofa {
-        void assemble();
+        default void assemble() {
+            assemble(System.out::println);
+        }
+
+        /**
+         * @param log куда написать о сборке
+         */
+        void assemble(Consumer<String> log);
     }
 
     interface Table {
-        void assemble();
+        default void assemble() {
+            assemble(System.out::println);
+        }
+
+        /**
+         * @param log куда написать о сборке
+         */
+        void assemble(Consumer<String> log);
     }
 
     interface FurnitureFactory {
@@ -58,35 +97,295 @@ public class AbstractFactory {
             sofa.assemble();
             table.assemble();
         }
+
+        public void assemble(Consumer<String> log) {
+            sofa.assemble(log);
+            table.assemble(log);
+        }
+    }
+
+    /**
+     * Собранный по одному заказу комплект.
+     */
+    class FurnitureSet {
+        private final String family;
+        private final Sofa sofa;
+        private final Table table;
+
+        FurnitureSet(String family, Sofa sofa, Table table) {
+            this.family = family;
+            this.sofa = sofa;
+            this.table = table;
+        }
+
+        public String getFamily() {
+            return family;
+        }
+
+        public Sofa getSofa() {
+            return sofa;
+        }
+
+        public Table getTable() {
+            return table;
+        }
+    }
+
+    /**
+     * <p>Сборочный цех для больших партий</p>
+     * <p>Принимает заказы на разные семейства мебели и собирает их на {@link ForkJoinPool}.
+     * Каждый рабочий поток получает собственные экземпляры фабрик из реестра, так что создание продуктов
+     * не выходит за пределы потока. Если семейство перерегистрировали, рабочие потоки берут новую фабрику со следующей партии.
+     * Результат — в порядке заказов или в порядке готовности, по выбору вызывающего.</p>
+     * <p>Сообщения о сборке по умолчанию не пишутся: общий stdout выстроил бы рабочие потоки в очередь за своим замком.</p>
+     */
+    class BulkAssembleCenter {
+        private static final int CHUNKS_PER_WORKER = 4;
+        private static final int MIN_CHUNK_SIZE = 256;
+
+        private final FactoryRegistry<String, FurnitureFactory> families;
+        private final ForkJoinPool pool;
+        private final Consumer<String> log;
+        private final ThreadLocal<Map<String, WorkerFactory>> workerFactories = ThreadLocal.withInitial(HashMap::new);
+
+        BulkAssembleCenter(FactoryRegistry<String, FurnitureFactory> families, ForkJoinPool pool) {
+            this(families, pool, message -> {
+            });
+        }
+
+        /**
+         * @param log куда писать о сборке; вызывается из рабочих потоков одновременно
+         */
+        BulkAssembleCenter(FactoryRegistry<String, FurnitureFactory> families, ForkJoinPool pool, Consumer<String> log) {
+            this.families = families;
+            this.pool = pool;
+            this.log = log;
+        }
+
+        /**
+         * Собрать партию; комплекты в порядке заказов.
+         *
+         * @param orders семейство для каждого заказа
+         */
+        public BulkAssembly assemble(List<String> orders) {
+            String[] families = orders.toArray(new String[0]);
+            FurnitureSet[] sets = new FurnitureSet[families.length];
+            return assemble(families, sets, chunk -> {
+            }, Arrays.asList(sets));
+        }
+
+        /**
+         * <p>Собрать партию, отдавая комплекты кусками по мере готовности.</p>
+         * <p>{@code ready} вызывается из рабочих потоков, как только собран очередной кусок, — одновременно и
+         * в порядке готовности, а не заказов. Итоговый {@link BulkAssembly#getSets()} в том же порядке.</p>
+         *
+         * @param orders семейство для каждого заказа
+         * @param ready  получатель готовых кусков
+         */
+        public BulkAssembly assemble(List<String> orders, Consumer<List<FurnitureSet>> ready) {
+            String[] families = orders.toArray(new String[0]);
+            FurnitureSet[] sets = new FurnitureSet[families.length];
+            Queue<List<FurnitureSet>> finished = new ConcurrentLinkedQueue<>();
+            List<FurnitureSet> inReadyOrder = new ArrayList<>(sets.length);
+            BulkAssembly assembly = assemble(families, sets, chunk -> {
+                finished.add(chunk);
+                ready.accept(chunk);
+            }, inReadyOrder);
+            finished.forEach(inReadyOrder::addAll);
+            return assembly;
+        }
+
+        private BulkAssembly assemble(String[] families, FurnitureSet[] sets,
+                                      Consumer<List<FurnitureSet>> onChunk, List<FurnitureSet> result) {
+            Map<String, Supplier<FurnitureFactory>> suppliers = suppliersFor(families);
+            int chunkCount = pool.getParallelism() * CHUNKS_PER_WORKER;
+            int chunkSize = Math.max(MIN_CHUNK_SIZE, (families.length + chunkCount - 1) / chunkCount);
+            int chunks = (families.length + chunkSize - 1) / chunkSize;
+            List<FurnitureSet> all = Arrays.asList(sets);
+            Map<String, FamilyStats> stats = new ConcurrentHashMap<>();
+            long start = System.nanoTime();
+            try {
+                pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                    int from = chunk * chunkSize;
+                    int to = Math.min(from + chunkSize, families.length);
+                    assembleChunk(families, from, to, sets, suppliers, stats);
+                    onChunk.accept(Collections.unmodifiableList(all.subList(from, to)));
+                })).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Bulk assembly interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Bulk assembly failed", e.getCause());
+            }
+            return new BulkAssembly(result, stats, System.nanoTime() - start);
+        }
+
+        /**
+         * Поставщики фиксируются на всю партию: перерегистрация посреди неё не смешивает фабрики.
+         * Заказ без семейства или с незарегистрированным семейством отклоняется до начала сборки.
+         */
+        private Map<String, Supplier<FurnitureFactory>> suppliersFor(String[] orders) {
+            Map<String, Supplier<FurnitureFactory>> suppliers = new HashMap<>();
+            for (int i = 0; i < orders.length; i++) {
+                String family = orders[i];
+                if (family == null) {
+                    throw new IllegalArgumentException("Order #" + i + " has no furniture family");
+                }
+                if (!suppliers.containsKey(family)) {
+                    if (!families.contains(family)) {
+                        throw new IllegalArgumentException("Order #" + i + " has unregistered furniture family '" + family + "'");
+                    }
+                    suppliers.put(family, families.supplier(family));
+                }
+            }
+            return suppliers;
+        }
+
+        /**
+         * Собирает заказы {@code [from, to)} в своём потоке; счётчики семейств копятся локально
+         * и сливаются в общие один раз на кусок. Конец одного заказа — начало следующего,
+         * так что часы читаются один раз на заказ.
+         */
+        private void assembleChunk(String[] orders, int from, int to, FurnitureSet[] sets,
+                                   Map<String, Supplier<FurnitureFactory>> suppliers, Map<String, FamilyStats> stats) {
+            Map<String, WorkerFactory> factories = workerFactories.get();
+            Map<String, long[]> chunkStats = new HashMap<>();
+            long start = System.nanoTime();
+            for (int i = from; i < to; i++) {
+                String family = orders[i];
+                Supplier<FurnitureFactory> supplier = suppliers.get(family);
+                WorkerFactory factory = factories.get(family);
+                if (factory == null || factory.supplier != supplier) {
+                    factory = new WorkerFactory(supplier);
+                    factories.put(family, factory);
+                }
+                AssembleCenter center = new AssembleCenter(factory.factory);
+                center.assemble(log);
+                sets[i] = new FurnitureSet(family, center.sofa, center.table);
+                long[] counters = chunkStats.computeIfAbsent(family, ignored -> new long[2]);
+                long end = System.nanoTime();
+                counters[0]++;
+                counters[1] += end - start;
+                start = end;
+            }
+            chunkStats.forEach((family, counters) ->
+                    stats.computeIfAbsent(family, FamilyStats::new).record(counters[0], counters[1]));
+        }
+    }
+
+    /**
+     * Фабрика рабочего потока и поставщик, от которого она получена, — по нему видно, что семейство заменили.
+     */
+    private static class WorkerFactory {
+        private final Supplier<FurnitureFactory> supplier;
+        private final FurnitureFactory factory;
+
+        WorkerFactory(Supplier<FurnitureFactory> supplier) {
+            this.supplier = supplier;
+            this.factory = supplier.get();
+        }
+    }
+
+    class BulkAssembly {
+        private final List<FurnitureSet> sets;
+        private final Map<String, FamilyStats> stats;
+        private final long wallNanos;
+
+        BulkAssembly(List<FurnitureSet> sets, Map<String, FamilyStats> stats, long wallNanos) {
+            this.sets = sets;
+            this.stats = stats;
+            this.wallNanos = wallNanos;
+        }
+
+        public List<FurnitureSet> getSets() {
+            return sets;
+        }
+
+        public Map<String, FamilyStats> getStats() {
+            return stats;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * Комплектов в секунду по всей партии.
+         */
+        public double getThroughput() {
+            return sets.size() * 1e9 / Math.max(1, wallNanos);
+        }
+    }
+
+    /**
+     * Счётчики одного семейства: сколько собрано и сколько времени рабочих потоков на это ушло.
+     */
+    class FamilyStats {
+        private final String family;
+        private final LongAdder assembled = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+
+        FamilyStats(String family) {
+            this.family = family;
+        }
+
+        void record(long sets, long nanos) {
+            assembled.add(sets);
+            busyNanos.add(nanos);
+        }
+
+        public String getFamily() {
+            return family;
+        }
+
+        public long getAssembled() {
+            return assembled.sum();
+        }
+
+        public long getBusyNanos() {
+            return busyNanos.sum();
+        }
+
+        /**
+         * Комплектов в секунду на один рабочий поток.
+         */
+        public double getThroughputPerWorker() {
+            return getAssembled() * 1e9 / Math.max(1, getBusyNanos());
+        }
+
+        @Override
+        public String toString() {
+            return family + ": " + getAssembled() + " sets, " + String.format("%.0f", getThroughputPerWorker()) + " sets/s per worker";
+        }
     }
 
     class WoodSofa implements Sofa {
         @Override
-        public void assemble() {
-            System.out.println("You had assembled wood sofa");
+        public void assemble(Consumer<String> log) {
+            log.accept("You had assembled wood sofa");
         }
     }
 
     class StoneSofa implements Sofa {
         @Override
-        public void assemble() {
-            System.out.println("You had assembled stone sofa");
+        public void assemble(Consumer<String> log) {
+            log.accept("You had assembled stone sofa");
         }
     }
 
     class WoodTable implements Table {
 
         @Override
-        public void assemble() {
-            System.out.println("You had assembled wood table");
+        public void assemble(Consumer<String> log) {
+            log.accept("You had assembled wood table");
         }
     }
 
     class StoneTable implements Table {
 
         @Override
-        public void assemble() {
-            System.out.println("You had assembled stone table");
+        public void assemble(Consumer<String> log) {
+            log.accept("You had assembled stone table");
         }
     }
 
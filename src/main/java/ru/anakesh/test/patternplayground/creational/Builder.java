@@ -3,6 +3,17 @@ package ru.anakesh.test.patternplayground.creational;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
@@ -11,7 +22,9 @@ import lombok.Getter;
  * <p>Порождающий паттерн проектирования, который позволяет создавать сложные объекты пошагово.</p>
  * <p>Строитель даёт возможность использовать один и тот же код строительства для получения разных представлений объектов.</p>
  */
-public class Builder {
+public class Builder implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     public static void main(String[] args) {
         new Builder().run();
     }
@@ -27,6 +40,9 @@ public class Builder {
 
     enum CarTransmission {SINGLE_SPEED, MANUAL, AUTOMATIC, SEMI_AUTOMATIC}
 
+    private static final CarType[] CAR_TYPES = CarType.values();
+    private static final CarTransmission[] CAR_TRANSMISSIONS = CarTransmission.values();
+
     abstract class CarParametersBuilder<T> {
         protected CarType carType;
         protected CarEngine carEngine;
@@ -53,40 +69,465 @@ public class Builder {
             return this;
         }
 
+        /**
+         * Собрать объект и сбросить строитель, чтобы параметры не перетекали в следующую сборку.
+         */
         public abstract T build();
+
+        public CarParametersBuilder<T> reset() {
+            carType = null;
+            carEngine = null;
+            carTransmission = null;
+            carNavigator = null;
+            return this;
+        }
     }
 
     @Getter
     class CarBuilder extends CarParametersBuilder<Car> {
         @Override
         public Car build() {
-            return new Car(carType, carEngine, carTransmission, carNavigator);
+            Car car = new Car(carType, carEngine, carTransmission, carNavigator);
+            reset();
+            return car;
         }
     }
 
     class CarManualBuilder extends CarParametersBuilder<CarManual> {
         @Override
         public CarManual build() {
-            return new CarManual(carType, carEngine, carTransmission, carNavigator);
+            CarManual manual = new CarManual(carType, carEngine, carTransmission, carNavigator);
+            reset();
+            return manual;
         }
     }
 
+    /**
+     * <p>Строители не потокобезопасны, поэтому у директора они свои в каждом потоке.</p>
+     * <p>Строитель переиспользуется от сборки к сборке и сбрасывается в {@code build()}.</p>
+     */
     class CarDirector {
-        private CarBuilder carBuilder = new CarBuilder();
-        private CarManualBuilder carManualBuilder = new CarManualBuilder();
+        private final ThreadLocal<CarBuilder> carBuilders = ThreadLocal.withInitial(CarBuilder::new);
+        private final ThreadLocal<CarManualBuilder> carManualBuilders = ThreadLocal.withInitial(CarManualBuilder::new);
+        private final CarPartsInterner parts;
+
+        CarDirector() {
+            this(null);
+        }
+
+        /**
+         * @param parts если задан, одинаковые двигатели и навигаторы всех собранных машин будут одним экземпляром
+         */
+        CarDirector(CarPartsInterner parts) {
+            this.parts = parts;
+        }
 
         public Car constructSUVCar() {
-            return carBuilder.setCarEngine(new CarEngine(2.0)).setCarNavigator(new CarNavigator("somewhere")).setCarTransmission(CarTransmission.SEMI_AUTOMATIC).setCarType(CarType.SUV).build();
+            return constructSUVCar(carBuilders.get());
+        }
+
+        /**
+         * Тот же SUV, но в представлении, которое выдаёт переданный строитель — например, строка в {@link CarBatch}.
+         */
+        public <T> T constructSUVCar(CarParametersBuilder<T> builder) {
+            return builder.setCarEngine(engine(2.0)).setCarNavigator(navigator("somewhere")).setCarTransmission(CarTransmission.SEMI_AUTOMATIC).setCarType(CarType.SUV).build();
+        }
+
+        public Car constructCityCar() {
+            return constructCityCar(carBuilders.get());
+        }
+
+        public <T> T constructCityCar(CarParametersBuilder<T> builder) {
+            return builder.setCarEngine(engine(1.2)).setCarType(CarType.CITY_CAR).build();
         }
 
         public CarManual constructCityCarManual() {
-            return carManualBuilder.setCarNavigator(new CarNavigator("manual")).setCarType(CarType.CITY_CAR).build();
+            return carManualBuilders.get().setCarNavigator(navigator("manual")).setCarType(CarType.CITY_CAR).build();
+        }
+
+        private CarEngine engine(double volume) {
+            CarEngine engine = new CarEngine(volume);
+            return parts == null ? engine : parts.engine(engine);
+        }
+
+        private CarNavigator navigator(String destination) {
+            CarNavigator navigator = new CarNavigator(destination);
+            return parts == null ? navigator : parts.navigator(navigator);
+        }
+    }
+
+    /**
+     * <p>Канонизация значений</p>
+     * <p>Возвращает один общий экземпляр для всех равных значений. Чтение без блокировок,
+     * размер таблицы ограничен: когда она заполнена, новые значения возвращаются как есть, без запоминания.
+     * Граница соблюдается приблизительно — при гонке таблица может превысить её на число конкурирующих потоков.</p>
+     * <p>Значения должны быть неизменяемыми, иначе изменение одного затронет всех, кто его делит.</p>
+     */
+    class Interner<T> {
+        private final ConcurrentMap<T, T> canonical = new ConcurrentHashMap<>();
+        private final int maxSize;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+
+        Interner(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public T intern(T value) {
+            requests.increment();
+            T existing = canonical.get(value);
+            if (existing == null) {
+                if (canonical.size() >= maxSize) {
+                    return value;
+                }
+                existing = canonical.putIfAbsent(value, value);
+                if (existing == null) {
+                    return value;
+                }
+            }
+            hits.increment();
+            return existing;
+        }
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * Сколько раз вместо переданного значения был отдан уже имеющийся экземпляр.
+         */
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public int getDistinct() {
+            return canonical.size();
+        }
+    }
+
+    /**
+     * <p>Общие двигатели и навигаторы для массовой сборки машин.</p>
+     * <p>Различных значений обычно единицы, а машин — миллионы: каждое попадание экономит один объект в куче.</p>
+     */
+    class CarPartsInterner {
+        /**
+         * Оценка размера {@link CarEngine} и {@link CarNavigator} со сжатыми ссылками: заголовок 12 байт,
+         * поле и ссылка на внешний {@link Builder}, с выравниванием до 8.
+         */
+        static final int PART_SIZE_BYTES = 24;
+
+        private final Interner<CarEngine> engines;
+        private final Interner<CarNavigator> navigators;
+
+        CarPartsInterner(int maxEntriesPerPart) {
+            this.engines = new Interner<>(maxEntriesPerPart);
+            this.navigators = new Interner<>(maxEntriesPerPart);
+        }
+
+        public CarEngine engine(CarEngine engine) {
+            return engine == null ? null : engines.intern(engine);
+        }
+
+        public CarNavigator navigator(CarNavigator navigator) {
+            return navigator == null ? null : navigators.intern(navigator);
+        }
+
+        public Interner<CarEngine> getEngines() {
+            return engines;
+        }
+
+        public Interner<CarNavigator> getNavigators() {
+            return navigators;
+        }
+
+        /**
+         * Во сколько раз меньше объектов-деталей живёт в куче: запрошено / реально удержано.
+         */
+        public double getDeduplicationRatio() {
+            long requests = engines.getRequests() + navigators.getRequests();
+            long retained = requests - engines.getHits() - navigators.getHits();
+            return retained == 0 ? 0 : (double) requests / retained;
+        }
+
+        /**
+         * Оценка сэкономленной кучи, в байтах.
+         */
+        public long getEstimatedBytesSaved() {
+            return (engines.getHits() + navigators.getHits()) * PART_SIZE_BYTES;
+        }
+    }
+
+    /**
+     * Строитель, который не создаёт объект, а дописывает строку в {@link CarBatch}.
+     */
+    class CarBatchBuilder extends CarParametersBuilder<CarBatch> {
+        private final CarBatch batch;
+
+        CarBatchBuilder(CarBatch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public CarBatch build() {
+            batch.append(carType, carEngine, carTransmission, carNavigator);
+            reset();
+            return batch;
+        }
+    }
+
+    /**
+     * <p>Колоночное хранение большого парка машин</p>
+     * <p>{@code List<Car>} платит заголовок и четыре ссылки за каждую машину плюс вложенные объекты.
+     * Здесь каждое поле — отдельный примитивный массив: тип и коробка хранятся ординалами в {@code byte[]},
+     * объём двигателя — в {@code double[]}, пункт назначения навигатора — кодом в словаре строк.
+     * Сканирование, фильтры и агрегаты идут по массивам без разыменований.</p>
+     * <p>Отсутствующие значения: ординал {@value #ABSENT}, объём {@code NaN}, код навигатора {@value #ABSENT}.</p>
+     * <p>Не потокобезопасен.</p>
+     */
+    class CarBatch {
+        static final int ABSENT = -1;
+
+        private byte[] types;
+        private byte[] transmissions;
+        private double[] engineVolumes;
+        private int[] destinations;
+        private int size;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        CarBatch(int initialCapacity) {
+            int capacity = Math.max(16, initialCapacity);
+            types = new byte[capacity];
+            transmissions = new byte[capacity];
+            engineVolumes = new double[capacity];
+            destinations = new int[capacity];
+        }
+
+        public CarBatchBuilder builder() {
+            return new CarBatchBuilder(this);
+        }
+
+        /**
+         * @return номер добавленной строки
+         */
+        public int append(CarType type, CarEngine engine, CarTransmission transmission, CarNavigator navigator) {
+            return append(type, engine == null ? Double.NaN : engine.getVolume(), transmission,
+                    navigator == null ? null : navigator.getDestination());
+        }
+
+        /**
+         * Добавить строку без промежуточных объектов: {@code NaN} — нет двигателя, {@code null} — нет навигатора.
+         */
+        public int append(CarType type, double engineVolume, CarTransmission transmission, String destination) {
+            if (size == types.length) {
+                grow();
+            }
+            int row = size++;
+            types[row] = (byte) (type == null ? ABSENT : type.ordinal());
+            transmissions[row] = (byte) (transmission == null ? ABSENT : transmission.ordinal());
+            engineVolumes[row] = engineVolume;
+            destinations[row] = destination == null ? ABSENT : encode(destination);
+            return row;
+        }
+
+        public int append(Car car) {
+            return append(car.getCarType(), car.getCarEngine(), car.getCarTransmission(), car.getCarNavigator());
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Код строки в словаре или {@value #ABSENT}, если такой строки в партии нет.
+         */
+        public int destinationCode(String destination) {
+            Integer code = codes.get(destination);
+            return code == null ? ABSENT : code;
+        }
+
+        public CarType getCarType(int row) {
+            int ordinal = types[checkRow(row)];
+            return ordinal == ABSENT ? null : CAR_TYPES[ordinal];
+        }
+
+        public CarTransmission getCarTransmission(int row) {
+            int ordinal = transmissions[checkRow(row)];
+            return ordinal == ABSENT ? null : CAR_TRANSMISSIONS[ordinal];
+        }
+
+        public double getEngineVolume(int row) {
+            return engineVolumes[checkRow(row)];
+        }
+
+        public String getDestination(int row) {
+            int code = destinations[checkRow(row)];
+            return code == ABSENT ? null : dictionary.get(code);
+        }
+
+        /**
+         * Собрать обычный {@link Car} из строки — для тех мест, где нужен объект.
+         */
+        public Car toCar(int row) {
+            double volume = getEngineVolume(row);
+            String destination = getDestination(row);
+            return new Car(getCarType(row),
+                    Double.isNaN(volume) ? null : new CarEngine(volume),
+                    getCarTransmission(row),
+                    destination == null ? null : new CarNavigator(destination));
+        }
+
+        /**
+         * Курсор-приспособленец: один объект на весь проход, без выделения памяти на строку.
+         */
+        public Cursor cursor() {
+            return new Cursor();
+        }
+
+        /**
+         * Число машин каждого типа, индекс — {@link CarType#ordinal()}.
+         */
+        public int[] countByType() {
+            int[] counts = new int[CAR_TYPES.length];
+            for (int row = 0; row < size; row++) {
+                int ordinal = types[row];
+                if (ordinal != ABSENT) {
+                    counts[ordinal]++;
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * Средний объём двигателя у машин типа {@code type}; машины без двигателя не учитываются.
+         */
+        public double averageEngineVolume(CarType type) {
+            byte ordinal = (byte) type.ordinal();
+            double sum = 0;
+            int count = 0;
+            for (int row = 0; row < size; row++) {
+                double volume = engineVolumes[row];
+                if (types[row] == ordinal && volume == volume) {
+                    sum += volume;
+                    count++;
+                }
+            }
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+        /**
+         * Номера строк с заданным типом и коробкой; {@code null} в аргументе — любое значение.
+         */
+        public int[] rowsWhere(CarType type, CarTransmission transmission) {
+            int typeOrdinal = type == null ? Integer.MIN_VALUE : type.ordinal();
+            int transmissionOrdinal = transmission == null ? Integer.MIN_VALUE : transmission.ordinal();
+            int[] rows = new int[16];
+            int found = 0;
+            for (int row = 0; row < size; row++) {
+                if ((typeOrdinal == Integer.MIN_VALUE || types[row] == typeOrdinal)
+                        && (transmissionOrdinal == Integer.MIN_VALUE || transmissions[row] == transmissionOrdinal)) {
+                    if (found == rows.length) {
+                        rows = Arrays.copyOf(rows, found * 2);
+                    }
+                    rows[found++] = row;
+                }
+            }
+            return Arrays.copyOf(rows, found);
+        }
+
+        public int countByDestination(String destination) {
+            int code = destinationCode(destination);
+            if (code == ABSENT) {
+                return 0;
+            }
+            int count = 0;
+            for (int row = 0; row < size; row++) {
+                if (destinations[row] == code) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private int encode(String destination) {
+            Integer code = codes.get(destination);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(destination);
+                codes.put(destination, code);
+            }
+            return code;
+        }
+
+        private void grow() {
+            int capacity = types.length + (types.length >> 1);
+            types = Arrays.copyOf(types, capacity);
+            transmissions = Arrays.copyOf(transmissions, capacity);
+            engineVolumes = Arrays.copyOf(engineVolumes, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+        }
+
+        private int checkRow(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+            }
+            return row;
+        }
+
+        /**
+         * <p>Позиция в партии. Начинает перед первой строкой: {@code while (cursor.next()) { ... }}.</p>
+         * <p>Геттеры читают массивы напрямую, объекты {@link Car} не создаются.</p>
+         */
+        class Cursor {
+            private int row = -1;
+
+            public boolean next() {
+                if (row + 1 >= size) {
+                    return false;
+                }
+                row++;
+                return true;
+            }
+
+            public Cursor moveTo(int row) {
+                this.row = checkRow(row);
+                return this;
+            }
+
+            public int getRow() {
+                return row;
+            }
+
+            public CarType getCarType() {
+                int ordinal = types[row];
+                return ordinal == ABSENT ? null : CAR_TYPES[ordinal];
+            }
+
+            public CarTransmission getCarTransmission() {
+                int ordinal = transmissions[row];
+                return ordinal == ABSENT ? null : CAR_TRANSMISSIONS[ordinal];
+            }
+
+            public double getEngineVolume() {
+                return engineVolumes[row];
+            }
+
+            public int getDestinationCode() {
+                return destinations[row];
+            }
+
+            public String getDestination() {
+                int code = destinations[row];
+                return code == ABSENT ? null : dictionary.get(code);
+            }
         }
     }
 
     @Data
     @AllArgsConstructor
-    class Car {
+    class Car implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         private CarType carType;
         private CarEngine carEngine;
         private CarTransmission carTransmission;
@@ -95,23 +536,33 @@ public class Builder {
 
     @Data
     @AllArgsConstructor
-    class CarManual {
+    class CarManual implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         private CarType carType;
         private CarEngine carEngine;
         private CarTransmission carTransmission;
         private CarNavigator carNavigator;
     }
 
-    @Data
-    @AllArgsConstructor
-    class CarEngine {
-        private double volume;
+    /**
+     * Неизменяемый: экземпляры делятся между машинами через {@link CarPartsInterner}.
+     */
+    @Value
+    class CarEngine implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        double volume;
     }
 
-    @Data
-    @AllArgsConstructor
-    class CarNavigator {
-        private String destination;
+    /**
+     * Неизменяемый: экземпляры делятся между машинами через {@link CarPartsInterner}.
+     */
+    @Value
+    class CarNavigator implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        String destination;
     }
 }
 
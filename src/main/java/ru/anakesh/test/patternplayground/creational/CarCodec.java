@@ -0,0 +1,399 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Двоичный формат потока {@link Builder.Car} и {@link Builder.CarManual}</p>
+ * <p>Поток начинается с заголовка {@code "CARS"} и версии, дальше идут записи:</p>
+ * <ul>
+ *     <li>байт флагов: {@link #MANUAL}, {@link #HAS_ENGINE}, {@link #HAS_NAVIGATOR}, {@link #NEW_DESTINATION}, {@link #RAW_VOLUME};</li>
+ *     <li>байт с ординалами типа и коробки, по 3 бита, 0 — {@code null};</li>
+ *     <li>объём двигателя: zigzag-varint в тысячных долях литра, если он так представим без потерь, иначе 8 байт double;</li>
+ *     <li>навигатор: varint-код из словаря потока; новая строка передаётся один раз — длина и UTF-8 байты.</li>
+ * </ul>
+ * <p>Кодировщик и декодер работают через {@link ByteBuffer}, а при работе с каналом (например, {@link java.nio.channels.FileChannel})
+ * сами сбрасывают и подкачивают буфер. На запись и чтение поля объекты не создаются: декодер отдаёт текущую запись
+ * через геттеры, а объекты строятся только по явному запросу.</p>
+ */
+public final class CarCodec {
+    static final int MANUAL = 1;
+    static final int HAS_ENGINE = 1 << 1;
+    static final int HAS_NAVIGATOR = 1 << 2;
+    static final int NEW_DESTINATION = 1 << 3;
+    static final int RAW_VOLUME = 1 << 4;
+
+    private static final int MAGIC = 0x43415253; // "CARS"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    /**
+     * Флаги, ординалы, double и varint кода — всё, кроме новой строки словаря.
+     */
+    private static final int MAX_FIXED_RECORD_SIZE = 1 + 1 + 10 + 5;
+    private static final Builder.CarType[] CAR_TYPES = Builder.CarType.values();
+    private static final Builder.CarTransmission[] CAR_TRANSMISSIONS = Builder.CarTransmission.values();
+
+    private CarCodec() {
+    }
+
+    /**
+     * <p>Кодировщик записей.</p>
+     * <p>Над голым буфером бросает {@link BufferOverflowException}, когда место кончилось;
+     * над каналом сбрасывает буфер в канал. Не потокобезопасен.</p>
+     */
+    public static final class Encoder implements Closeable {
+        private final WritableByteChannel channel;
+        private ByteBuffer buffer;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private long records;
+
+        public Encoder(ByteBuffer target) {
+            this(null, target);
+        }
+
+        public Encoder(WritableByteChannel channel, int bufferSize) {
+            this(channel, ByteBuffer.allocateDirect(Math.max(bufferSize, 64)));
+        }
+
+        private Encoder(WritableByteChannel channel, ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+            ensure(HEADER_SIZE);
+            buffer.putInt(MAGIC).put(VERSION);
+        }
+
+        public void write(Builder.Car car) {
+            write(false, car.getCarType(), car.getCarTransmission(), car.getCarEngine(), car.getCarNavigator());
+        }
+
+        public void write(Builder.CarManual manual) {
+            write(true, manual.getCarType(), manual.getCarTransmission(), manual.getCarEngine(), manual.getCarNavigator());
+        }
+
+        private void write(boolean manual, Builder.CarType type, Builder.CarTransmission transmission,
+                           Builder.CarEngine engine, Builder.CarNavigator navigator) {
+            write(manual, type, transmission, engine == null ? Double.NaN : engine.getVolume(),
+                    navigator == null ? null : navigator.getDestination());
+        }
+
+        /**
+         * Записать машину по полям: {@code NaN} — нет двигателя, {@code null} — нет навигатора.
+         */
+        public void write(boolean manual, Builder.CarType type, Builder.CarTransmission transmission,
+                          double engineVolume, String destination) {
+            int flags = manual ? MANUAL : 0;
+            long millilitres = 0;
+            boolean hasEngine = engineVolume == engineVolume;
+            if (hasEngine) {
+                flags |= HAS_ENGINE;
+                millilitres = Math.round(engineVolume * 1000);
+                if (Double.compare(millilitres / 1000.0, engineVolume) != 0) {
+                    flags |= RAW_VOLUME;
+                }
+            }
+            int code = -1;
+            byte[] newDestination = null;
+            if (destination != null) {
+                flags |= HAS_NAVIGATOR;
+                Integer known = dictionary.get(destination);
+                if (known == null) {
+                    flags |= NEW_DESTINATION;
+                    newDestination = destination.getBytes(StandardCharsets.UTF_8);
+                } else {
+                    code = known;
+                }
+            }
+            // Запись целиком помещается в буфер до первого put, чтобы переполнение не оставило половину записи
+            ensure(MAX_FIXED_RECORD_SIZE + (newDestination == null ? 0 : 5 + newDestination.length));
+
+            buffer.put((byte) flags);
+            buffer.put((byte) ((type == null ? 0 : type.ordinal() + 1) | (transmission == null ? 0 : transmission.ordinal() + 1) << 3));
+            if (hasEngine) {
+                if ((flags & RAW_VOLUME) != 0) {
+                    buffer.putDouble(engineVolume);
+                } else {
+                    putVarLong((millilitres << 1) ^ (millilitres >> 63));
+                }
+            }
+            if (newDestination != null) {
+                putVarLong(newDestination.length);
+                buffer.put(newDestination);
+                dictionary.put(destination, dictionary.size());
+            } else if (code >= 0) {
+                putVarLong(code);
+            }
+            records++;
+        }
+
+        /**
+         * Записать всю колоночную партию подряд.
+         */
+        public void write(Builder.CarBatch batch) {
+            Builder.CarBatch.Cursor cursor = batch.cursor();
+            while (cursor.next()) {
+                write(false, cursor.getCarType(), cursor.getCarTransmission(), cursor.getEngineVolume(), cursor.getDestination());
+            }
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * Сбросить накопленное в канал. Над голым буфером ничего не делает.
+         */
+        public void flush() throws IOException {
+            if (channel == null) {
+                return;
+            }
+            ((Buffer) buffer).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            ((Buffer) buffer).clear();
+        }
+
+        /**
+         * Сбрасывает буфер; сам канал закрывает тот, кто его открыл.
+         */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        private void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            if (channel == null) {
+                throw new BufferOverflowException();
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot flush car stream", e);
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(bytes);
+            }
+        }
+    }
+
+    /**
+     * <p>Декодер записей.</p>
+     * <p>{@link #next()} переходит к следующей записи, геттеры читают её поля. Строки навигатора
+     * создаются один раз на элемент словаря и дальше отдаются одни и те же. Не потокобезопасен.</p>
+     */
+    public static final class Decoder {
+        private final ReadableByteChannel channel;
+        private ByteBuffer buffer;
+        private final List<String> dictionary = new ArrayList<>();
+        private boolean endOfChannel;
+
+        private boolean manual;
+        private Builder.CarType type;
+        private Builder.CarTransmission transmission;
+        private double engineVolume;
+        private int destinationCode;
+
+        public Decoder(ByteBuffer source) throws IOException {
+            this(null, source);
+        }
+
+        public Decoder(ReadableByteChannel channel, int bufferSize) throws IOException {
+            this(channel, emptyBuffer(Math.max(bufferSize, 64)));
+        }
+
+        private Decoder(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.endOfChannel = channel == null;
+            if (!ensure(HEADER_SIZE) || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a car stream");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported car stream version " + version);
+            }
+        }
+
+        /**
+         * Пустой буфер чтения: {@link #ensure(int)} дочитывает в него из канала.
+         */
+        private static ByteBuffer emptyBuffer(int capacity) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+            ((Buffer) buffer).flip();
+            return buffer;
+        }
+
+        /**
+         * @return {@code false}, когда записи кончились
+         */
+        public boolean next() throws IOException {
+            if (!ensure(1)) {
+                return false;
+            }
+            if (!ensure(MAX_FIXED_RECORD_SIZE) && buffer.remaining() < 2) {
+                throw new EOFException("Truncated record");
+            }
+            int flags = buffer.get();
+            int ordinals = buffer.get();
+            manual = (flags & MANUAL) != 0;
+            int typeOrdinal = ordinals & 0x7;
+            int transmissionOrdinal = (ordinals >>> 3) & 0x7;
+            type = typeOrdinal == 0 ? null : CAR_TYPES[typeOrdinal - 1];
+            transmission = transmissionOrdinal == 0 ? null : CAR_TRANSMISSIONS[transmissionOrdinal - 1];
+
+            if ((flags & HAS_ENGINE) == 0) {
+                engineVolume = Double.NaN;
+            } else if ((flags & RAW_VOLUME) != 0) {
+                if (buffer.remaining() < Double.BYTES) {
+                    throw new EOFException("Truncated engine volume");
+                }
+                engineVolume = buffer.getDouble();
+            } else {
+                long zigzag = getVarLong();
+                engineVolume = ((zigzag >>> 1) ^ -(zigzag & 1)) / 1000.0;
+            }
+
+            if ((flags & HAS_NAVIGATOR) == 0) {
+                destinationCode = -1;
+            } else if ((flags & NEW_DESTINATION) != 0) {
+                int length = (int) getVarLong();
+                if (!ensure(length)) {
+                    throw new EOFException("Truncated destination");
+                }
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                destinationCode = dictionary.size();
+                dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+            } else {
+                destinationCode = (int) getVarLong();
+                if (destinationCode >= dictionary.size()) {
+                    throw new IOException("Unknown destination code " + destinationCode);
+                }
+            }
+            return true;
+        }
+
+        public boolean isManual() {
+            return manual;
+        }
+
+        public Builder.CarType getCarType() {
+            return type;
+        }
+
+        public Builder.CarTransmission getCarTransmission() {
+            return transmission;
+        }
+
+        /**
+         * {@code NaN}, если двигателя нет.
+         */
+        public double getEngineVolume() {
+            return engineVolume;
+        }
+
+        public int getDestinationCode() {
+            return destinationCode;
+        }
+
+        public String getDestination() {
+            return destinationCode < 0 ? null : dictionary.get(destinationCode);
+        }
+
+        public Builder.Car toCar(Builder builder) {
+            return builder.new Car(type, engine(builder), transmission, navigator(builder));
+        }
+
+        public Builder.CarManual toCarManual(Builder builder) {
+            return builder.new CarManual(type, engine(builder), transmission, navigator(builder));
+        }
+
+        /**
+         * Дочитать поток в колоночную партию, не создавая объектов на запись.
+         *
+         * @return сколько записей добавлено
+         */
+        public int readInto(Builder.CarBatch batch) throws IOException {
+            int read = 0;
+            while (next()) {
+                batch.append(type, engineVolume, transmission, getDestination());
+                read++;
+            }
+            return read;
+        }
+
+        private Builder.CarEngine engine(Builder builder) {
+            return engineVolume == engineVolume ? builder.new CarEngine(engineVolume) : null;
+        }
+
+        private Builder.CarNavigator navigator(Builder builder) {
+            return destinationCode < 0 ? null : builder.new CarNavigator(getDestination());
+        }
+
+        private long getVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (!ensure(1)) {
+                    throw new EOFException("Truncated varint");
+                }
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        /**
+         * Подкачать из канала, пока в буфере не окажется хотя бы {@code bytes} байт.
+         *
+         * @return {@code false}, если поток кончился раньше
+         */
+        private boolean ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (endOfChannel) {
+                return false;
+            }
+            if (buffer.capacity() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    endOfChannel = true;
+                    break;
+                }
+            }
+            ((Buffer) buffer).flip();
+            return buffer.remaining() >= bytes;
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package ru.anakesh.test.patternplayground.creational;
 
+import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
  * <p>Фабричный метод</p>
@@ -10,18 +15,29 @@ import java.time.LocalDate;
  * позволяя подклассам изменять тип создаваемых объектов.</p>
  */
 public class FactoryMethod {
+    final FactoryRegistry<FabricType, ProductFabric> fabrics = new FactoryRegistry<>();
+
+    public FactoryMethod() {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        fabrics.register(FabricType.FIRST, FactoryRegistry.constructorOf(lookup, FirstProductFabric.class, this));
+        fabrics.register(FabricType.SECOND, FactoryRegistry.constructorOf(lookup, SecondProductFabric.class, this));
+    }
+
     public static void main(String[] args) {
         FactoryMethod factoryMethod = new FactoryMethod();
-        ProductFabric productFabric = factoryMethod.determinateFabric();
+        ProductFabric productFabric = factoryMethod.determinateFabric(FabricType.forDate(LocalDate.now()));
         productFabric.workWithProduct();
     }
 
-    private ProductFabric determinateFabric() {
-        int dayOfMonth = LocalDate.now().getDayOfMonth();
-        if (dayOfMonth % 2 == 0) {
-            return new FirstProductFabric();
-        } else {
-            return new SecondProductFabric();
+    private ProductFabric determinateFabric(FabricType type) {
+        return fabrics.create(type);
+    }
+
+    enum FabricType {
+        FIRST, SECOND;
+
+        static FabricType forDate(LocalDate date) {
+            return date.getDayOfMonth() % 2 == 0 ? FIRST : SECOND;
         }
     }
 
@@ -29,8 +45,15 @@ public class FactoryMethod {
         void doStuff();
     }
 
-    class FirstProduct implements Product {
-        private final String info;
+    /**
+     * Продукт, который можно вернуть в исходное состояние и выдать повторно.
+     */
+    interface ResettableProduct extends Product {
+        void reset();
+    }
+
+    class FirstProduct implements ResettableProduct {
+        private String info;
 
         FirstProduct(String info) {
             this.info = info;
@@ -40,10 +63,19 @@ public class FactoryMethod {
         public void doStuff() {
             System.out.println("FirstProduct with info: " + info);
         }
+
+        void setInfo(String info) {
+            this.info = info;
+        }
+
+        @Override
+        public void reset() {
+            info = null;
+        }
     }
 
-    class SecondProduct implements Product {
-        private final int number;
+    class SecondProduct implements ResettableProduct {
+        private int number;
 
         SecondProduct(int number) {
             this.number = number;
@@ -52,6 +84,15 @@ public class FactoryMethod {
         public void doStuff() {
             System.out.println("SecondProduct with number: " + number);
         }
+
+        void setNumber(int number) {
+            this.number = number;
+        }
+
+        @Override
+        public void reset() {
+            number = 0;
+        }
     }
 
     abstract class ProductFabric {
@@ -77,5 +118,130 @@ public class FactoryMethod {
             return new SecondProduct(2);
         }
     }
-}
 
+    /**
+     * <p>Фабрика с пулом продуктов</p>
+     * <p>Вместо нового продукта на каждую единицу работы берёт сброшенный продукт из пула текущего потока
+     * и возвращает его туда после {@link Product#doStuff()}. Пул ограничен: лишние продукты просто отдаются GC.</p>
+     * <p>Пул у каждого потока свой, поэтому продукт нужно вернуть в том же потоке, где он был взят.
+     * Пул помнит выданные продукты, так что повторный возврат, возврат из другого потока или чужого продукта
+     * отклоняется, а не кладёт живой продукт в пул. Невозвращённые продукты видны через {@link #outstanding()}
+     * и {@link #checkNoLeaks()}.</p>
+     */
+    abstract class PooledProductFabric<T extends ResettableProduct> extends ProductFabric {
+        private final int maxPoolSize;
+        private final ThreadLocal<Pool<T>> pools = ThreadLocal.withInitial(Pool::new);
+
+        PooledProductFabric(int maxPoolSize) {
+            if (maxPoolSize < 1) {
+                throw new IllegalArgumentException("Pool size must be positive: " + maxPoolSize);
+            }
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        @Override
+        public void workWithProduct() {
+            T product = acquire();
+            try {
+                product.doStuff();
+            } finally {
+                release(product);
+            }
+        }
+
+        public T acquire() {
+            Pool<T> pool = pools.get();
+            T product = pool.free.pollFirst();
+            if (product == null) {
+                product = newBlankProduct();
+            }
+            initialize(product);
+            pool.outstanding.add(product);
+            return product;
+        }
+
+        public void release(T product) {
+            Pool<T> pool = pools.get();
+            if (!pool.outstanding.remove(product)) {
+                throw new IllegalStateException("Product was not acquired on " + Thread.currentThread().getName()
+                        + " or is already released");
+            }
+            product.reset();
+            if (pool.free.size() < maxPoolSize) {
+                pool.free.addFirst(product);
+            }
+        }
+
+        /**
+         * Сколько продуктов текущий поток взял и ещё не вернул.
+         */
+        public int outstanding() {
+            return pools.get().outstanding.size();
+        }
+
+        /**
+         * Бросает {@link IllegalStateException}, если текущий поток не вернул какие-то продукты.
+         */
+        public void checkNoLeaks() {
+            int outstanding = outstanding();
+            if (outstanding != 0) {
+                throw new IllegalStateException(outstanding + " pooled product(s) were never released on " + Thread.currentThread().getName());
+            }
+        }
+
+        /**
+         * Новый продукт в том же состоянии, что у обычной фабрики, — мимо пула.
+         */
+        @Override
+        T createProduct() {
+            T product = newBlankProduct();
+            initialize(product);
+            return product;
+        }
+
+        /**
+         * Продукт в пустом, сброшенном состоянии.
+         */
+        abstract T newBlankProduct();
+
+        /**
+         * Привести сброшенный продукт в состояние, в котором его выдаёт обычная фабрика.
+         */
+        abstract void initialize(T product);
+    }
+
+    private static class Pool<T> {
+        private final ArrayDeque<T> free = new ArrayDeque<>();
+        private final Set<T> outstanding = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    class PooledFirstProductFabric extends PooledProductFabric<FirstProduct> {
+
+        PooledFirstProductFabric(int maxPoolSize) {
+            super(maxPoolSize);
+        }
+
+        FirstProduct newBlankProduct() {
+            return new FirstProduct(null);
+        }
+
+        void initialize(FirstProduct product) {
+            product.setInfo("created in FirstProductFabric");
+        }
+    }
+
+    class PooledSecondProductFabric extends PooledProductFabric<SecondProduct> {
+
+        PooledSecondProductFabric(int maxPoolSize) {
+            super(maxPoolSize);
+        }
+
+        SecondProduct newBlankProduct() {
+            return new SecondProduct(0);
+        }
+
+        void initialize(SecondProduct product) {
+            product.setNumber(2);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * <p>Реестр фабрик</p>
+ * <p>Заменяет выбор реализации через if/else: ключ (enum или строка) сопоставляется с конструктором,
+ * который через {@link LambdaMetafactory} превращён в обычный {@link Supplier}.
+ * После прогрева JIT вызов такого поставщика встраивается и стоит столько же, сколько прямой {@code new},
+ * в отличие от рефлексивного {@code Constructor.newInstance}.</p>
+ * <p>Семейства можно регистрировать и заменять во время работы, в том числе из разных потоков.</p>
+ */
+public class FactoryRegistry<K, T> {
+    private final Map<K, Supplier<? extends T>> suppliers = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Поставщик, вызывающий конструктор без аргументов.</p>
+     * <p>{@code lookup} должен иметь приватный доступ к {@code type} — обычно это {@code MethodHandles.lookup()}
+     * из того же пакета.</p>
+     */
+    public static <T> Supplier<T> constructorOf(MethodHandles.Lookup lookup, Class<T> type) {
+        return bind(lookup, type, MethodType.methodType(void.class), MethodType.methodType(Supplier.class));
+    }
+
+    /**
+     * Поставщик для внутреннего (не static) класса: экземпляр внешнего класса захватывается один раз.
+     */
+    public static <T> Supplier<T> constructorOf(MethodHandles.Lookup lookup, Class<T> type, Object outer) {
+        Class<?> outerType = type.getEnclosingClass();
+        if (outerType == null || Modifier.isStatic(type.getModifiers())) {
+            throw new IllegalArgumentException(type.getName() + " is not an inner class");
+        }
+        if (!outerType.isInstance(outer)) {
+            throw new IllegalArgumentException(type.getName() + " needs an enclosing " + outerType.getName());
+        }
+        return bind(lookup, type, MethodType.methodType(void.class, outerType),
+                MethodType.methodType(Supplier.class, outerType), outer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> bind(MethodHandles.Lookup lookup, Class<T> type,
+                                        MethodType constructorType, MethodType invokedType, Object... captured) {
+        try {
+            MethodHandle constructor = lookup.findConstructor(type, constructorType);
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get", invokedType,
+                    MethodType.methodType(Object.class), constructor, MethodType.methodType(type));
+            return (Supplier<T>) site.getTarget().invokeWithArguments(captured);
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Cannot bind constructor of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Зарегистрировать или заменить семейство.
+     *
+     * @return поставщик, ранее зарегистрированный под этим ключом, или {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public Supplier<T> register(K key, Supplier<? extends T> supplier) {
+        return (Supplier<T>) suppliers.put(key, supplier);
+    }
+
+    public boolean unregister(K key) {
+        return suppliers.remove(key) != null;
+    }
+
+    public boolean contains(K key) {
+        return suppliers.containsKey(key);
+    }
+
+    /**
+     * <p>Поставщик для ключа.</p>
+     * <p>В горячем цикле выгоднее взять его один раз, чем искать по ключу на каждой итерации.</p>
+     */
+    @SuppressWarnings("unchecked")
+    public Supplier<T> supplier(K key) {
+        Supplier<? extends T> supplier = suppliers.get(key);
+        if (supplier == null) {
+            throw new IllegalArgumentException("No factory registered for " + key);
+        }
+        return (Supplier<T>) supplier;
+    }
+
+    public T create(K key) {
+        return supplier(key).get();
+    }
+}
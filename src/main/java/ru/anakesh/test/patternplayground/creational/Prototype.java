@@ -4,8 +4,14 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 
 /**
@@ -57,6 +63,12 @@ public class Prototype {
         }
 
         public abstract Shape clone();
+
+        /**
+         * Неизменяемая копия: сеттеры бросают {@link UnsupportedOperationException}, а {@link #clone()} даёт обычную фигуру.
+         * Неизменяемая фигура возвращает саму себя.
+         */
+        public abstract Shape readOnly();
     }
 
     @Data
@@ -74,6 +86,11 @@ public class Prototype {
         public Shape clone() {
             return new Circle(this);
         }
+
+        @Override
+        public Shape readOnly() {
+            return new ReadOnlyCircle(this);
+        }
     }
 
     @Data
@@ -94,12 +111,173 @@ public class Prototype {
         public Shape clone() {
             return new Rectangle(this);
         }
+
+        @Override
+        public Shape readOnly() {
+            return new ReadOnlyRectangle(this);
+        }
+    }
+
+    /**
+     * Круг, который нельзя изменить; равен обычному кругу с тем же состоянием.
+     */
+    private class ReadOnlyCircle extends Circle {
+        ReadOnlyCircle(Circle target) {
+            super(target);
+        }
+
+        @Override
+        public Shape readOnly() {
+            return this;
+        }
+
+        @Override
+        public void setX(int x) {
+            throw new UnsupportedOperationException("Read-only shape");
+        }
+
+        @Override
+        public void setY(int y) {
+            throw new UnsupportedOperationException("Read-only shape");
+        }
+
+        @Override
+        public void setColor(String color) {
+            throw new UnsupportedOperationException("Read-only shape");
+        }
+
+        @Override
+        public void setRadius(int radius) {
+            throw new UnsupportedOperationException("Read-only shape");
+        }
     }
 
+    /**
+     * Прямоугольник, который нельзя изменить; равен обычному прямоугольнику с тем же состоянием.
+     */
+    private class ReadOnlyRectangle extends Rectangle {
+        ReadOnlyRectangle(Rectangle target) {
+            super(target);
+        }
+
+        @Override
+        public Shape readOnly() {
+            return this;
+        }
+
+        @Override
+        public void setX(int x) {
+            throw new UnsupportedOperationException("Read-only shape");
+        }
+
+        @Override
+        public void setY(int y) {
+            throw new UnsupportedOperationException("Read-only shape");
+        }
+
+        @Override
+        public void setColor(String color) {
+            throw new UnsupportedOperationException("Read-only shape");
+        }
+
+        @Override
+        public void setWidth(int width) {
+            throw new UnsupportedOperationException("Read-only shape");
+        }
+
+        @Override
+        public void setHeight(int height) {
+            throw new UnsupportedOperationException("Read-only shape");
+        }
+    }
+
+    /**
+     * <p>Ленивая копия фигуры</p>
+     * <p>Пока её только читают через {@link #read()}, она смотрит на общий неизменяемый прототип и весит меньше любой
+     * фигуры: заголовок, ссылка и флаг. Собственная изменяемая копия заводится при первом {@link #write()}.</p>
+     * <p>{@code read()} возвращает фигуру, равную обычной копии из {@link BundledShapeCache#get(String)}, — её и
+     * сравнивать с другими {@link Shape}. {@code equals} и {@code hashCode} самой ленивой копии сравнивают фигуры за
+     * {@code read()}, так что она равна другой ленивой копии с тем же состоянием.</p>
+     * <p>Не потокобезопасна.</p>
+     */
+    static final class SharedShape {
+        private Shape shape;
+        private boolean copied;
+
+        /**
+         * @param prototype неизменяемая фигура — её состояние делят все ещё не записанные копии
+         */
+        SharedShape(Shape prototype) {
+            this.shape = prototype.readOnly();
+        }
+
+        /**
+         * Фигура для чтения: пока не было {@link #write()} — общий прототип, сеттеры которого бросают
+         * {@link UnsupportedOperationException}; после — собственная копия.
+         */
+        public Shape read() {
+            return shape;
+        }
+
+        /**
+         * Собственная фигура для изменения; при первом вызове прототип копируется.
+         */
+        public Shape write() {
+            if (!copied) {
+                shape = shape.clone();
+                copied = true;
+            }
+            return shape;
+        }
+
+        /**
+         * Завела ли копия собственную фигуру.
+         */
+        public boolean isCopied() {
+            return copied;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SharedShape && shape.equals(((SharedShape) o).shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return shape.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "SharedShape(" + shape + ")";
+        }
+    }
+
+    /**
+     * <p>Реестр прототипов</p>
+     * <p>Копирование при записи: читатели берут неизменяемый снимок карты без блокировок,
+     * а регистрация и замена атомарно подменяют снимок целиком. Записей мало и меняются они редко,
+     * так что копия карты на каждую запись дешевле любой синхронизации на чтении.</p>
+     * <p>Прототип сохраняется неизменяемой копией ({@link Shape#readOnly()}) — дальнейшие изменения переданного объекта
+     * на реестр не влияют, а через выданные ссылки прототип не поменять.</p>
+     * <p>{@link #getShared(String)} и {@link #shareMany(String, int)} отдают {@link SharedShape}, которые копируют прототип
+     * только при первой записи, — для тех, кто копию в основном читает.</p>
+     * <p>Реестр может опираться на {@link ShapeCatalog}: ключи, не зарегистрированные явно, ищутся в каталоге,
+     * и прототип разбирается из файла при первом запросе. Явная регистрация перекрывает запись каталога.</p>
+     */
     class BundledShapeCache {
-        private Map<String, Shape> cache = new HashMap<>();
+        private final AtomicReference<Map<String, Shape>> cache = new AtomicReference<>(Collections.emptyMap());
+        private final ShapeCatalog catalog;
+
+        /**
+         * Реестр с каталогом вместо встроенных прототипов.
+         */
+        public BundledShapeCache(ShapeCatalog catalog) {
+            this.catalog = catalog;
+        }
 
         public BundledShapeCache() {
+            this(null);
             Circle circle = new Circle();
             circle.setX(5);
             circle.setY(7);
@@ -113,17 +291,343 @@ public class Prototype {
             rectangle.setHeight(10);
             rectangle.setColor("Blue");
 
-            cache.put("Big green circle", circle);
-            cache.put("Medium blue rectangle", rectangle);
+            put("Big green circle", circle);
+            put("Medium blue rectangle", rectangle);
         }
 
+        /**
+         * Зарегистрировать или заменить прототип.
+         */
         public Shape put(String key, Shape shape) {
-            cache.put(key, shape);
+            Shape prototype = shape.readOnly();
+            update(current -> {
+                Map<String, Shape> next = new HashMap<>(current);
+                next.put(key, prototype);
+                return next;
+            });
             return shape;
         }
 
+        /**
+         * Зарегистрировать прототип, только если под этим ключом ещё ничего нет.
+         *
+         * @return {@code true}, если прототип зарегистрирован
+         */
+        public boolean putIfAbsent(String key, Shape shape) {
+            Shape prototype = shape.readOnly();
+            return update(current -> {
+                if (current.containsKey(key)) {
+                    return null;
+                }
+                Map<String, Shape> next = new HashMap<>(current);
+                next.put(key, prototype);
+                return next;
+            });
+        }
+
+        /**
+         * Удалить явно зарегистрированный прототип; записи каталога не удаляются.
+         */
+        public boolean remove(String key) {
+            return update(current -> {
+                if (!current.containsKey(key)) {
+                    return null;
+                }
+                Map<String, Shape> next = new HashMap<>(current);
+                next.remove(key);
+                return next;
+            });
+        }
+
+        public boolean contains(String key) {
+            return cache.get().containsKey(key) || catalog != null && catalog.contains(key);
+        }
+
+        /**
+         * Копия прототипа или {@code null}, если под этим ключом ничего не зарегистрировано.
+         */
         public Shape get(String key) {
-            return cache.get(key).clone();
+            Shape prototype = find(key);
+            if (prototype == null) {
+                return null;
+            }
+            return prototype.clone();
+        }
+
+        /**
+         * Ленивая копия прототипа или {@code null}, если под этим ключом ничего не зарегистрировано.
+         */
+        public SharedShape getShared(String key) {
+            Shape prototype = find(key);
+            return prototype == null ? null : new SharedShape(prototype);
+        }
+
+        /**
+         * Массив из {@code n} копий прототипа.
+         *
+         * @throws IllegalArgumentException если под этим ключом ничего не зарегистрировано
+         */
+        public Shape[] cloneMany(String key, int n) {
+            Shape[] shapes = new Shape[n];
+            cloneMany(key, shapes, 0, n);
+            return shapes;
+        }
+
+        /**
+         * <p>Заполнить {@code target[offset .. offset + n)} копиями прототипа.</p>
+         * <p>Прототип ищется один раз на весь проход, а не на каждую копию, как при {@code n} вызовах {@link #get(String)}.</p>
+         *
+         * @throws IllegalArgumentException если под этим ключом ничего не зарегистрировано
+         */
+        public void cloneMany(String key, Shape[] target, int offset, int n) {
+            if (offset < 0 || n < 0 || offset > target.length - n) {
+                throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + n + ") of " + target.length);
+            }
+            Shape prototype = prototype(key);
+            int end = offset + n;
+            for (int i = offset; i < end; i++) {
+                target[i] = prototype.clone();
+            }
+        }
+
+        /**
+         * Массив из {@code n} ленивых копий прототипа.
+         *
+         * @throws IllegalArgumentException если под этим ключом ничего не зарегистрировано
+         */
+        public SharedShape[] shareMany(String key, int n) {
+            Shape prototype = prototype(key);
+            SharedShape[] shapes = new SharedShape[n];
+            for (int i = 0; i < n; i++) {
+                shapes[i] = new SharedShape(prototype);
+            }
+            return shapes;
+        }
+
+        /**
+         * <p>Дописать в таблицу {@code n} копий прототипа — для тех, кому объекты не нужны.</p>
+         *
+         * @return номер первой добавленной строки
+         * @throws IllegalArgumentException если под этим ключом ничего не зарегистрировано
+         */
+        public int cloneMany(String key, int n, ShapeTable table) {
+            return table.appendCopies(prototype(key), n);
+        }
+
+        private Shape find(String key) {
+            Shape prototype = cache.get().get(key);
+            return prototype != null || catalog == null ? prototype : catalog.get(key);
+        }
+
+        private Shape prototype(String key) {
+            Shape prototype = find(key);
+            if (prototype == null) {
+                throw new IllegalArgumentException("No prototype registered for " + key);
+            }
+            return prototype;
+        }
+
+        /**
+         * Подменить снимок, повторяя при гонке с другим писателем.
+         *
+         * @param change новый снимок по текущему или {@code null}, если менять нечего
+         * @return был ли снимок подменён
+         */
+        private boolean update(UnaryOperator<Map<String, Shape>> change) {
+            while (true) {
+                Map<String, Shape> current = cache.get();
+                Map<String, Shape> next = change.apply(current);
+                if (next == null) {
+                    return false;
+                }
+                if (cache.compareAndSet(current, Collections.unmodifiableMap(next))) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Колоночная таблица фигур</p>
+     * <p>Каждое поле — отдельный примитивный массив, цвет хранится кодом в словаре строк.
+     * Тысячи копий одного прототипа записываются заполнением диапазонов массивов, без объекта на копию.</p>
+     * <p>Вид фигуры — {@value #CIRCLE} или {@value #RECTANGLE}; колонки, не относящиеся к виду строки, содержат 0,
+     * цвет {@code null} — код {@value #ABSENT}.</p>
+     * <p>Не потокобезопасна.</p>
+     */
+    class ShapeTable {
+        static final byte CIRCLE = 0;
+        static final byte RECTANGLE = 1;
+        static final int ABSENT = -1;
+
+        private byte[] kinds;
+        private int[] xs;
+        private int[] ys;
+        private int[] colors;
+        private int[] radii;
+        private int[] widths;
+        private int[] heights;
+        private int size;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        ShapeTable(int initialCapacity) {
+            int capacity = Math.max(16, initialCapacity);
+            kinds = new byte[capacity];
+            xs = new int[capacity];
+            ys = new int[capacity];
+            colors = new int[capacity];
+            radii = new int[capacity];
+            widths = new int[capacity];
+            heights = new int[capacity];
+        }
+
+        /**
+         * @return номер добавленной строки
+         */
+        public int append(Shape shape) {
+            return appendCopies(shape, 1);
+        }
+
+        /**
+         * @return номер первой добавленной строки
+         */
+        public int appendCopies(Shape shape, int n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("Negative count " + n);
+            }
+            byte kind;
+            int radius = 0;
+            int width = 0;
+            int height = 0;
+            if (shape instanceof Circle) {
+                kind = CIRCLE;
+                radius = ((Circle) shape).getRadius();
+            } else if (shape instanceof Rectangle) {
+                kind = RECTANGLE;
+                width = ((Rectangle) shape).getWidth();
+                height = ((Rectangle) shape).getHeight();
+            } else {
+                throw new IllegalArgumentException("Unsupported shape " + shape.getClass().getName());
+            }
+            String color = shape.getColor();
+
+            int from = size;
+            int to = from + n;
+            ensureCapacity(to);
+            Arrays.fill(kinds, from, to, kind);
+            Arrays.fill(xs, from, to, shape.getX());
+            Arrays.fill(ys, from, to, shape.getY());
+            Arrays.fill(colors, from, to, color == null ? ABSENT : encode(color));
+            Arrays.fill(radii, from, to, radius);
+            Arrays.fill(widths, from, to, width);
+            Arrays.fill(heights, from, to, height);
+            size = to;
+            return from;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Забыть строки, сохранив массивы и словарь цветов, — чтобы переиспользовать таблицу.
+         */
+        public void clear() {
+            size = 0;
+        }
+
+        /**
+         * Код цвета в словаре или {@value #ABSENT}, если такого цвета в таблице нет.
+         */
+        public int colorCode(String color) {
+            Integer code = codes.get(color);
+            return code == null ? ABSENT : code;
+        }
+
+        public byte getKind(int row) {
+            return kinds[checkRow(row)];
+        }
+
+        public int getX(int row) {
+            return xs[checkRow(row)];
+        }
+
+        public int getY(int row) {
+            return ys[checkRow(row)];
+        }
+
+        public int getColorCode(int row) {
+            return colors[checkRow(row)];
+        }
+
+        public String getColor(int row) {
+            int code = colors[checkRow(row)];
+            return code == ABSENT ? null : dictionary.get(code);
+        }
+
+        public int getRadius(int row) {
+            return radii[checkRow(row)];
+        }
+
+        public int getWidth(int row) {
+            return widths[checkRow(row)];
+        }
+
+        public int getHeight(int row) {
+            return heights[checkRow(row)];
+        }
+
+        /**
+         * Собрать обычную фигуру из строки — для тех мест, где нужен объект.
+         */
+        public Shape toShape(int row) {
+            Shape shape;
+            if (getKind(row) == CIRCLE) {
+                Circle circle = new Circle();
+                circle.setRadius(radii[row]);
+                shape = circle;
+            } else {
+                Rectangle rectangle = new Rectangle();
+                rectangle.setWidth(widths[row]);
+                rectangle.setHeight(heights[row]);
+                shape = rectangle;
+            }
+            shape.setX(xs[row]);
+            shape.setY(ys[row]);
+            shape.setColor(getColor(row));
+            return shape;
+        }
+
+        private int encode(String color) {
+            Integer code = codes.get(color);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(color);
+                codes.put(color, code);
+            }
+            return code;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= kinds.length) {
+                return;
+            }
+            int capacity = Math.max(required, kinds.length + (kinds.length >> 1));
+            kinds = Arrays.copyOf(kinds, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+            radii = Arrays.copyOf(radii, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+        }
+
+        private int checkRow(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+            }
+            return row;
         }
     }
 }
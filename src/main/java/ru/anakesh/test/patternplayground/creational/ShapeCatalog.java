@@ -0,0 +1,255 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Каталог прототипов в файле, отображённом в память</p>
+ * <p>Файл начинается с заголовка {@code "SHPC"}, версии и числа записей, за ним идёт индекс — по 8 байт на запись
+ * (смещение ключа и смещение прототипа), отсортированный по UTF-8 байтам ключа, и сами ключи и прототипы:</p>
+ * <ul>
+ *     <li>ключ: длина (2 байта) и UTF-8 байты;</li>
+ *     <li>прототип: вид ({@link Prototype.ShapeTable#CIRCLE} или {@link Prototype.ShapeTable#RECTANGLE}), x, y,
+ *     цвет — длина (2 байта, {@code 0xFFFF} — {@code null}) и UTF-8 байты, затем радиус или ширина и высота.</li>
+ * </ul>
+ * <p>При открытии проверяется только заголовок: ключ ищется двоичным поиском прямо по отображённому индексу,
+ * а прототип разбирается при первом обращении и запоминается. Время открытия и занятая куча не зависят от размера
+ * каталога — растут только с числом реально запрошенных прототипов.</p>
+ * <p>Потокобезопасен: отображённый буфер читается только абсолютными методами. Размер файла — до 2 ГБ.</p>
+ */
+public final class ShapeCatalog {
+    private static final int MAGIC = 0x53485043; // "SHPC"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 9;
+    private static final int SLOT_SIZE = 8;
+    private static final int NO_COLOR = 0xFFFF;
+    private static final int MAX_STRING_BYTES = 0xFFFE;
+
+    private final Prototype owner;
+    private final ByteBuffer data;
+    private final int count;
+    private final ConcurrentMap<String, Prototype.Shape> materialized = new ConcurrentHashMap<>();
+
+    private ShapeCatalog(Prototype owner, ByteBuffer data, int count) {
+        this.owner = owner;
+        this.data = data;
+        this.count = count;
+    }
+
+    /**
+     * <p>Отобразить каталог в память.</p>
+     * <p>Фигуры — внутренние классы {@link Prototype}, поэтому создаются от имени {@code owner}.</p>
+     */
+    public static ShapeCatalog open(Path file, Prototype owner) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Отображение остаётся действительным и после закрытия канала
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a shape catalog: " + file);
+        }
+        byte version = data.get(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported shape catalog version " + version);
+        }
+        int count = data.getInt(5);
+        if (count < 0 || (long) HEADER_SIZE + (long) count * SLOT_SIZE > data.limit()) {
+            throw new IOException("Truncated shape catalog index: " + file);
+        }
+        return new ShapeCatalog(owner, data, count);
+    }
+
+    /**
+     * Записать каталог; повторные ключи невозможны, порядок в {@code prototypes} не важен.
+     */
+    public static void write(Path file, Map<String, ? extends Prototype.Shape> prototypes) throws IOException {
+        List<Map.Entry<byte[], Prototype.Shape>> entries = new ArrayList<>(prototypes.size());
+        for (Map.Entry<String, ? extends Prototype.Shape> entry : prototypes.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(utf8(entry.getKey()), entry.getValue()));
+        }
+        entries.sort((a, b) -> compareUnsigned(a.getKey(), b.getKey()));
+
+        int bodyStart = HEADER_SIZE + entries.size() * SLOT_SIZE;
+        ByteBuffer index = ByteBuffer.allocate(bodyStart);
+        index.putInt(MAGIC).put(VERSION).putInt(entries.size());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        for (Map.Entry<byte[], Prototype.Shape> entry : entries) {
+            byte[] key = entry.getKey();
+            index.putInt(bodyStart + out.size());
+            out.writeShort(key.length);
+            out.write(key);
+            index.putInt(bodyStart + out.size());
+            writeShape(out, entry.getValue());
+        }
+        out.flush();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ((Buffer) index).flip();
+            ByteBuffer records = ByteBuffer.wrap(body.toByteArray());
+            while (index.hasRemaining() || records.hasRemaining()) {
+                channel.write(new ByteBuffer[]{index, records});
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean contains(String key) {
+        if (key == null) {
+            return false;
+        }
+        return materialized.containsKey(key) || find(key.getBytes(StandardCharsets.UTF_8)) >= 0;
+    }
+
+    /**
+     * <p>Прототип по ключу или {@code null}, если его нет в каталоге или ключ {@code null}.</p>
+     * <p>Возвращается один и тот же общий неизменяемый экземпляр ({@link Prototype.Shape#readOnly()}),
+     * изменяемые копии снимает {@link Prototype.BundledShapeCache}.</p>
+     */
+    public Prototype.Shape get(String key) {
+        if (key == null) {
+            return null;
+        }
+        Prototype.Shape shape = materialized.get(key);
+        if (shape != null) {
+            return shape;
+        }
+        int slot = find(key.getBytes(StandardCharsets.UTF_8));
+        if (slot < 0) {
+            return null;
+        }
+        return materialized.computeIfAbsent(key, ignored -> readShape(data.getInt(HEADER_SIZE + slot * SLOT_SIZE + 4)));
+    }
+
+    /**
+     * Сколько прототипов уже разобрано из файла.
+     */
+    public int materializedCount() {
+        return materialized.size();
+    }
+
+    private int find(byte[] key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(data.getInt(HEADER_SIZE + mid * SLOT_SIZE), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareKey(int offset, byte[] key) {
+        int length = data.getShort(offset) & 0xFFFF;
+        int start = offset + 2;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (data.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private Prototype.Shape readShape(int offset) {
+        byte kind = data.get(offset);
+        int x = data.getInt(offset + 1);
+        int y = data.getInt(offset + 5);
+        int colorLength = data.getShort(offset + 9) & 0xFFFF;
+        int position = offset + 11;
+        String color = null;
+        if (colorLength != NO_COLOR) {
+            byte[] bytes = new byte[colorLength];
+            for (int i = 0; i < colorLength; i++) {
+                bytes[i] = data.get(position + i);
+            }
+            color = new String(bytes, StandardCharsets.UTF_8);
+            position += colorLength;
+        }
+
+        Prototype.Shape shape;
+        if (kind == Prototype.ShapeTable.CIRCLE) {
+            Prototype.Circle circle = owner.new Circle();
+            circle.setRadius(data.getInt(position));
+            shape = circle;
+        } else if (kind == Prototype.ShapeTable.RECTANGLE) {
+            Prototype.Rectangle rectangle = owner.new Rectangle();
+            rectangle.setWidth(data.getInt(position));
+            rectangle.setHeight(data.getInt(position + 4));
+            shape = rectangle;
+        } else {
+            throw new IllegalStateException("Unknown shape kind " + kind + " at offset " + offset);
+        }
+        shape.setX(x);
+        shape.setY(y);
+        shape.setColor(color);
+        return shape.readOnly();
+    }
+
+    private static void writeShape(DataOutputStream out, Prototype.Shape shape) throws IOException {
+        boolean circle = shape instanceof Prototype.Circle;
+        if (!circle && !(shape instanceof Prototype.Rectangle)) {
+            throw new IllegalArgumentException("Unsupported shape " + shape.getClass().getName());
+        }
+        out.writeByte(circle ? Prototype.ShapeTable.CIRCLE : Prototype.ShapeTable.RECTANGLE);
+        out.writeInt(shape.getX());
+        out.writeInt(shape.getY());
+        if (shape.getColor() == null) {
+            out.writeShort(NO_COLOR);
+        } else {
+            byte[] color = utf8(shape.getColor());
+            out.writeShort(color.length);
+            out.write(color);
+        }
+        if (circle) {
+            out.writeInt(((Prototype.Circle) shape).getRadius());
+        } else {
+            out.writeInt(((Prototype.Rectangle) shape).getWidth());
+            out.writeInt(((Prototype.Rectangle) shape).getHeight());
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String longer than " + MAX_STRING_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+}
@@ -1,28 +1,53 @@
 package ru.anakesh.test.patternplayground.creational;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * <p>Одиночка</p>
- * <p>Гарантирует </p>
+ * <p>Гарантирует, что для каждого значения существует ровно один экземпляр (multiton),
+ * и даёт к нему глобальную точку доступа.</p>
+ * <p>Чтение уже созданного экземпляра идёт без блокировок, а конструктор вызывается не более одного раза на ключ,
+ * даже если за него одновременно борются несколько потоков.</p>
+ * <p>Ключ {@code null} допустим и, как и раньше, даёт экземпляр со значением {@code null}.</p>
  */
 public class Singleton {
-    private static volatile Singleton instance;
-    private String value;
+    /**
+     * Ключ для {@code null}: {@link ConcurrentHashMap} не хранит {@code null}, а равен этот ключ только самому себе.
+     */
+    private static final Object NULL_KEY = new Object();
+    private static final ConcurrentMap<Object, Singleton> instances = new ConcurrentHashMap<>();
+    private final String value;
 
     private Singleton(String value) {
         this.value = value;
     }
 
     public static Singleton getInstance(String value) {
-        Singleton result = instance;
+        // get() не блокирует, а computeIfAbsent в Java 8 захватывает бакет даже при попадании
+        Object key = keyOf(value);
+        Singleton result = instances.get(key);
         if (result != null) {
             return result;
         }
-        synchronized (Singleton.class) {
-            if (instance == null) {
-                instance = new Singleton(value);
-            }
-            return instance;
-        }
+        return instances.computeIfAbsent(key, ignored -> new Singleton(value));
+    }
+
+    /**
+     * <p>Забыть экземпляр для ключа, который больше не используется.</p>
+     * <p>Следующий {@link #getInstance(String)} с этим ключом создаст новый экземпляр.</p>
+     *
+     * @return был ли экземпляр для этого ключа
+     */
+    public static boolean evict(String value) {
+        return instances.remove(keyOf(value)) != null;
+    }
+
+    private static Object keyOf(String value) {
+        return value == null ? NULL_KEY : value;
+    }
 
+    public String getValue() {
+        return value;
     }
 }
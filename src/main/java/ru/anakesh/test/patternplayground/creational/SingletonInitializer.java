@@ -0,0 +1,244 @@
+package ru.anakesh.test.patternplayground.creational;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * <p>Прогрев одиночек при старте</p>
+ * <p>{@link Singleton} создаёт экземпляр при первом запросе, и всю цену конструирования платит первый вызывающий.
+ * Здесь дорогие сервисы-одиночки объявляют свои зависимости и создаются заранее:
+ * независимые — параллельно на ограниченном пуле, зависимые — сразу как готовы их зависимости.</p>
+ * <p>Тот, кто пришёл раньше готовности, ждёт future; кто позже — получает уже опубликованный экземпляр без ожидания.</p>
+ */
+public class SingletonInitializer {
+    private final Map<String, Service<?>> services = new LinkedHashMap<>();
+    private final Map<String, Object> published = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Object>> futures = new ConcurrentHashMap<>();
+    private final Map<String, Long> readyAtNanos = new ConcurrentHashMap<>();
+    private volatile boolean started;
+    private volatile long startedAtNanos;
+
+    public static void main(String[] args) {
+        SingletonInitializer initializer = new SingletonInitializer()
+                .register("config", deps -> slow(Singleton.getInstance("config"), 300))
+                .register("metrics", deps -> slow(Singleton.getInstance("metrics"), 200))
+                .register("database", deps -> slow(Singleton.getInstance("database"), 400), "config")
+                .register("cache", deps -> slow(Singleton.getInstance("cache"), 300), "config", "metrics")
+                .register("api", deps -> slow(Singleton.getInstance("api"), 100), "database", "cache");
+
+        // Сервисы здесь спят, а не считают, так что пул шире числа ядер всё равно полезен
+        initializer.start(Math.max(4, Runtime.getRuntime().availableProcessors())).join();
+
+        System.out.println("Sequential cold start: ~1300ms, critical path config -> database -> api: ~800ms");
+        for (Map.Entry<String, Duration> entry : initializer.timeToReady().entrySet()) {
+            System.out.println(entry.getKey() + " ready after " + entry.getValue().toMillis() + "ms");
+        }
+    }
+
+    private static <T> T slow(T value, long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+
+    /**
+     * <p>Объявить сервис.</p>
+     * <p>Фабрика получает доступ только к объявленным зависимостям, и к моменту её вызова они уже созданы.
+     * Future сервиса появляется сразу при регистрации, так что {@link #get(String)} во время {@link #start(int)}
+     * ждёт его, а не считает сервис неизвестным.</p>
+     */
+    public synchronized <T> SingletonInitializer register(String name, Function<Dependencies, T> factory, String... dependsOn) {
+        if (started) {
+            throw new IllegalStateException("Initializer already started");
+        }
+        if (services.containsKey(name)) {
+            throw new IllegalArgumentException("Service '" + name + "' is already registered");
+        }
+        services.put(name, new Service<>(name, factory, Arrays.asList(dependsOn)));
+        futures.put(name, new CompletableFuture<>());
+        return this;
+    }
+
+    /**
+     * <p>Запустить прогрев на пуле из {@code parallelism} потоков.</p>
+     * <p>Пул закрывается сам, когда все сервисы готовы или упали.</p>
+     *
+     * @return future, завершающийся когда готовы все сервисы
+     */
+    public synchronized CompletableFuture<Void> start(int parallelism) {
+        if (started) {
+            throw new IllegalStateException("Initializer already started");
+        }
+        List<Service<?>> order = topologicalOrder();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, new WarmupThreadFactory());
+        startedAtNanos = System.nanoTime();
+        started = true;
+
+        for (Service<?> service : order) {
+            CompletableFuture<?>[] dependencies = new CompletableFuture<?>[service.dependsOn.size()];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = futures.get(service.dependsOn.get(i));
+            }
+            CompletableFuture<Object> ready = futures.get(service.name);
+            CompletableFuture.allOf(dependencies)
+                    .thenApplyAsync(ignored -> create(service), pool)
+                    .whenComplete((instance, error) -> {
+                        if (error != null) {
+                            ready.completeExceptionally(error);
+                        } else {
+                            ready.complete(instance);
+                        }
+                    });
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]));
+        all.whenComplete((ignored, error) -> pool.shutdown());
+        return all;
+    }
+
+    /**
+     * <p>Экземпляр сервиса.</p>
+     * <p>Если он ещё не готов — ждёт его создания, в том числе если {@link #start(int)} ещё не вызван;
+     * если создание упало — бросает {@link java.util.concurrent.CompletionException}.</p>
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String name) {
+        Object instance = published.get(name);
+        if (instance != null) {
+            return (T) instance;
+        }
+        return (T) registered(name).join();
+    }
+
+    /**
+     * Future сервиса; выдаётся только после {@link #start(int)}, до него — {@link IllegalStateException}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> future(String name) {
+        CompletableFuture<Object> future = registered(name);
+        if (!started) {
+            throw new IllegalStateException("Initializer is not started");
+        }
+        return (CompletableFuture<T>) future;
+    }
+
+    private CompletableFuture<Object> registered(String name) {
+        CompletableFuture<Object> future = futures.get(name);
+        if (future == null) {
+            throw new IllegalArgumentException("Unknown service '" + name + "'");
+        }
+        return future;
+    }
+
+    /**
+     * Время от {@link #start(int)} до готовности каждого уже созданного сервиса, в порядке регистрации.
+     */
+    public synchronized Map<String, Duration> timeToReady() {
+        Map<String, Duration> result = new LinkedHashMap<>();
+        for (String name : services.keySet()) {
+            Long readyAt = readyAtNanos.get(name);
+            if (readyAt != null) {
+                result.put(name, Duration.ofNanos(readyAt - startedAtNanos));
+            }
+        }
+        return result;
+    }
+
+    private Object create(Service<?> service) {
+        Object instance = service.factory.apply(new Dependencies(service));
+        if (instance == null) {
+            throw new IllegalStateException("Service '" + service.name + "' factory returned null");
+        }
+        published.put(service.name, instance);
+        readyAtNanos.put(service.name, System.nanoTime());
+        return instance;
+    }
+
+    private List<Service<?>> topologicalOrder() {
+        List<Service<?>> order = new ArrayList<>(services.size());
+        Set<String> visited = new HashSet<>();
+        Set<String> inProgress = new HashSet<>();
+        for (Service<?> service : services.values()) {
+            visit(service, visited, inProgress, order);
+        }
+        return order;
+    }
+
+    private void visit(Service<?> service, Set<String> visited, Set<String> inProgress, List<Service<?>> order) {
+        if (visited.contains(service.name)) {
+            return;
+        }
+        if (!inProgress.add(service.name)) {
+            throw new IllegalStateException("Dependency cycle through service '" + service.name + "'");
+        }
+        for (String dependency : service.dependsOn) {
+            Service<?> next = services.get(dependency);
+            if (next == null) {
+                throw new IllegalStateException("Service '" + service.name + "' depends on unknown '" + dependency + "'");
+            }
+            visit(next, visited, inProgress, order);
+        }
+        inProgress.remove(service.name);
+        visited.add(service.name);
+        order.add(service);
+    }
+
+    private static class Service<T> {
+        private final String name;
+        private final Function<Dependencies, T> factory;
+        private final List<String> dependsOn;
+
+        Service(String name, Function<Dependencies, T> factory, List<String> dependsOn) {
+            this.name = name;
+            this.factory = factory;
+            this.dependsOn = Collections.unmodifiableList(new ArrayList<>(dependsOn));
+        }
+    }
+
+    /**
+     * Доступ фабрики к уже готовым зависимостям.
+     */
+    public class Dependencies {
+        private final Service<?> service;
+
+        Dependencies(Service<?> service) {
+            this.service = service;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T get(String name) {
+            if (!service.dependsOn.contains(name)) {
+                throw new IllegalArgumentException("Service '" + service.name + "' does not declare dependency '" + name + "'");
+            }
+            return (T) published.get(name);
+        }
+    }
+
+    private static class WarmupThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "singleton-warmup-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package ru.anakesh.test.patternplayground.structural;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.BitSet;
+
 /**
  * <p>Адаптер</p>
  * <p>Структурный паттерн проектирования, который позволяет объектам с несовместимыми интерфейсами работать вместе.</p>
@@ -25,10 +27,33 @@ import lombok.Data;
  * </p>
  */
 public class Adapter {
+    private final ThreadLocal<SquarePegAdapter> views = ThreadLocal.withInitial(() -> new SquarePegAdapter(null));
+
     public static void main(String[] args) {
         new Adapter().run();
     }
 
+    /**
+     * <p>Радиус описанной окружности квадрата со стороной {@code width} — то, как {@link SquarePegAdapter} видит квадратный колышек.</p>
+     * <p>Квадрат через умножение, а не {@code Math.pow}: результат точно округлён, и в пакетной проверке не нужен вызов pow на колышек.</p>
+     */
+    static double squareToRadius(double width) {
+        double half = width / 2;
+        return Math.sqrt(half * half * 2);
+    }
+
+    /**
+     * <p>Адаптер квадратного колышка без выделения памяти: один изменяемый адаптер на поток, перенацеливаемый на {@code peg}.</p>
+     * <p>Ведёт себя как {@code new SquarePegAdapter(peg)}, но действителен только до следующего вызова {@code view}
+     * в этом потоке — сохранять его или передавать в другой поток нельзя. Подходит для проверки потока колышков:
+     * {@code pegs.filter(peg -> hole.fits(adapter.view(peg)))}.</p>
+     */
+    public SquarePegAdapter view(SquarePeg peg) {
+        SquarePegAdapter view = views.get();
+        view.setPeg(peg);
+        return view;
+    }
+
     private void run() {
         // Круглое к круглому — всё работает.
         RoundHole hole = new RoundHole(5);
@@ -60,6 +85,45 @@ public class Adapter {
         public boolean fits(RoundPeg peg) {
             return (this.getRadius() >= peg.getRadius());
         }
+
+        /**
+         * <p>Проверить сразу массив круглых колышков: бит {@code i} установлен, если подходит колышек {@code pegRadii[i]}.</p>
+         * <p>Без объектов на колышек: один проход по массиву, биты собираются в слова по 64 без ветвлений.</p>
+         */
+        public BitSet fitsRound(double[] pegRadii) {
+            double limit = radius;
+            long[] words = new long[(pegRadii.length + 63) >>> 6];
+            for (int word = 0; word < words.length; word++) {
+                int from = word << 6;
+                int to = Math.min(from + 64, pegRadii.length);
+                long bits = 0;
+                for (int i = from; i < to; i++) {
+                    // Сдвиг long берёт младшие 6 бит, так что 1L << i — это бит i внутри слова
+                    bits |= (limit >= pegRadii[i] ? 1L : 0L) << i;
+                }
+                words[word] = bits;
+            }
+            return BitSet.valueOf(words);
+        }
+
+        /**
+         * <p>Проверить сразу массив квадратных колышков по их ширине — то же, что {@link #fits(RoundPeg)}
+         * с {@link SquarePegAdapter}, но без адаптера на каждый колышек.</p>
+         */
+        public BitSet fitsSquare(double[] pegWidths) {
+            double limit = radius;
+            long[] words = new long[(pegWidths.length + 63) >>> 6];
+            for (int word = 0; word < words.length; word++) {
+                int from = word << 6;
+                int to = Math.min(from + 64, pegWidths.length);
+                long bits = 0;
+                for (int i = from; i < to; i++) {
+                    bits |= (limit >= squareToRadius(pegWidths[i]) ? 1L : 0L) << i;
+                }
+                words[word] = bits;
+            }
+            return BitSet.valueOf(words);
+        }
     }
 
     @Data
@@ -84,7 +148,7 @@ public class Adapter {
 
         @Override
         public double getRadius() {
-            return (Math.sqrt(Math.pow((peg.getWidth() / 2), 2) * 2));
+            return squareToRadius(peg.getWidth());
         }
     }
 }
@@ -0,0 +1,365 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * <p>Кэш результатов конвертации</p>
+ * <p>Результат адресуется содержимым: ключ — SHA-256 исходного файла и целевой формат, так что переименованный
+ * или скопированный исходник попадает в тот же кэш. Повторная конвертация стоит копирования готового файла ядром
+ * через {@code transferTo} вместо перекодирования.</p>
+ * <p>Хеш источника запоминается вместе с его размером, временем изменения и ключом файла в файловой системе и при повторном
+ * запросе того же пути берётся без чтения файла, пока эти атрибуты не поменялись, — как быстрая проверка у make и rsync.
+ * Файлу, изменённому меньше чем за {@value #MTIME_SLACK_MILLIS} мс до хеширования, не верят: в пределах одной отметки
+ * времени его могли переписать ещё раз.</p>
+ * <p>Результаты лежат в каталоге кэша как {@code <sha256>.<формат>}; общий размер ограничен, при переполнении удаляются
+ * давно не использованные. Порядок использования переживает перезапуск — он хранится во времени изменения файлов.
+ * Одновременные запросы одного ключа конвертируются один раз, остальные ждут первого.</p>
+ * <p>Цель всегда получает собственную копию: существующий файл удаляется и создаётся заново, так что её дальнейшие
+ * изменения кэш не затрагивают.</p>
+ */
+public class ConversionCache {
+    private static final Pattern FORMAT = Pattern.compile("[a-z0-9]{1,16}");
+    private static final Pattern ENTRY_NAME = Pattern.compile("[0-9a-f]{64}\\." + FORMAT.pattern());
+    private static final int HASH_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_SOURCE_HASHES = 4096;
+    private static final long MTIME_SLACK_MILLIS = 2000;
+
+    private final Facade.VideoConversionFacade facade;
+    private final Path directory;
+    private final long maxBytes;
+    /**
+     * Записи в порядке использования, от давних к свежим; размеры — под тем же монитором.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private long totalBytes;
+    /**
+     * Хеши источников по абсолютному пути, от давно запрошенных к недавним.
+     */
+    private final LinkedHashMap<Path, SourceHash> sourceHashes = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Открыть кэш в {@code directory}: уже лежащие там результаты подхватываются, недописанные удаляются.
+     */
+    public ConversionCache(Facade facade, Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive: " + maxBytes);
+        }
+        this.facade = facade.new VideoConversionFacade();
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+
+        List<Path> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (Iterator<Path> iterator = files.iterator(); iterator.hasNext(); ) {
+                Path file = iterator.next();
+                if (ENTRY_NAME.matcher(file.getFileName().toString()).matches()) {
+                    existing.add(file);
+                } else if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        existing.sort(Comparator.comparing(ConversionCache::lastModified));
+        synchronized (entries) {
+            for (Path file : existing) {
+                long size = Files.size(file);
+                entries.put(file.getFileName().toString(), size);
+                totalBytes += size;
+            }
+            evictOverBudget();
+        }
+    }
+
+    /**
+     * <p>Сконвертировать {@code source} в {@code target} через кэш; существующий {@code target} заменяется.</p>
+     *
+     * @param format формат из строчных латинских букв и цифр — он становится частью имени файла в кэше
+     * @return результат, как у {@link Facade.VideoConversionFacade#convertVideo(Path, Path, String)}
+     * @throws IllegalArgumentException если {@code source} и {@code target} — один и тот же файл
+     */
+    public File convertVideo(Path source, Path target, String format) throws IOException {
+        if (!FORMAT.matcher(format).matches()) {
+            throw new IllegalArgumentException("Format must match " + FORMAT.pattern() + ": '" + format + "'");
+        }
+        // Попадание удаляет target перед копированием — вместе с ним пропал бы и источник
+        if (Files.exists(target) && Files.isSameFile(source, target)) {
+            throw new IllegalArgumentException("Source and target are the same file: " + source);
+        }
+        String key = sourceHash(source) + "." + format;
+        while (true) {
+            if (touch(key)) {
+                if (copy(directory.resolve(key), target)) {
+                    hits.increment();
+                    return target.toFile();
+                }
+                // Запись вытеснили между проверкой и копированием — конвертируем заново
+                forget(key);
+            }
+            Path entry = convertOnce(key, source, format);
+            if (copy(entry, target)) {
+                return target.toFile();
+            }
+            forget(key);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Запросы, которые не конвертировали сами, а дождались такой же конвертации из другого потока.
+     */
+    public long getDeduplicated() {
+        return deduplicated.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getSizeBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Единственная конвертация на ключ: первый запрос конвертирует, одновременные с ним ждут его результата.
+     */
+    private Path convertOnce(String key, Path source, String format) throws IOException {
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            deduplicated.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            misses.increment();
+            Path entry = directory.resolve(key);
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            try {
+                facade.convertVideo(source, temporary, format);
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            add(key, Files.size(entry));
+            mine.complete(entry);
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private boolean touch(String key) throws IOException {
+        synchronized (entries) {
+            if (entries.get(key) == null) {
+                return false;
+            }
+        }
+        try {
+            Files.setLastModifiedTime(directory.resolve(key), FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            forget(key);
+            return false;
+        }
+    }
+
+    private void add(String key, long size) throws IOException {
+        synchronized (entries) {
+            Long previous = entries.put(key, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+            evictOverBudget();
+        }
+    }
+
+    private void forget(String key) {
+        synchronized (entries) {
+            Long size = entries.remove(key);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+    }
+
+    /**
+     * Вызывается под монитором {@link #entries}. Самая свежая запись остаётся, даже если одна превышает бюджет, —
+     * иначе её не успели бы выдать. Копирование, уже открывшее удаляемую запись, дочитывает её.
+     */
+    private void evictOverBudget() throws IOException {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && entries.size() > 1) {
+            Map.Entry<String, Long> entry = eldest.next();
+            Files.deleteIfExists(directory.resolve(entry.getKey()));
+            totalBytes -= entry.getValue();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Хеш источника: запомненный, если путь, размер, время изменения и ключ файла те же, иначе — заново по содержимому.
+     */
+    private String sourceHash(Path source) throws IOException {
+        Path path = source.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        synchronized (sourceHashes) {
+            SourceHash known = sourceHashes.get(path);
+            if (known != null && known.matches(attributes)) {
+                return known.hash;
+            }
+        }
+        long startedMillis = System.currentTimeMillis();
+        String hash = hash(path);
+        // Атрибуты сняты до чтения: если файл поменяли во время хеширования, они уже не совпадут
+        if (attributes.lastModifiedTime().toMillis() + MTIME_SLACK_MILLIS <= startedMillis) {
+            synchronized (sourceHashes) {
+                sourceHashes.put(path, new SourceHash(attributes, hash));
+                if (sourceHashes.size() > MAX_SOURCE_HASHES) {
+                    Iterator<Path> eldest = sourceHashes.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Скопировать запись в {@code target}. Прежний {@code target} удаляется, а не переписывается на месте:
+     * если это жёсткая ссылка на чужой файл, тот не пострадает.
+     *
+     * @return {@code false}, если записи уже нет — её вытеснили
+     */
+    private static boolean copy(Path entry, Path target) throws IOException {
+        FileChannel in;
+        try {
+            in = FileChannel.open(entry, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try (FileChannel source = in) {
+            Files.deleteIfExists(target);
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = source.transferTo(position, size - position, out);
+                    if (transferred == 0) {
+                        throw new IOException("No progress copying " + entry + " at position " + position + " of " + size);
+                    }
+                    position += transferred;
+                }
+            }
+        }
+        return true;
+    }
+
+    static String hash(Path source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_CHUNK_SIZE);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                ((Buffer) buffer).flip();
+                digest.update(buffer);
+                ((Buffer) buffer).clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Хеш содержимого и атрибуты файла, при которых он был снят.
+     */
+    private static final class SourceHash {
+        private final long size;
+        private final FileTime lastModified;
+        private final Object fileKey;
+        private final String hash;
+
+        SourceHash(BasicFileAttributes attributes, String hash) {
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime();
+            this.fileKey = attributes.fileKey();
+            this.hash = hash;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified.equals(attributes.lastModifiedTime())
+                    && Objects.equals(fileKey, attributes.fileKey());
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
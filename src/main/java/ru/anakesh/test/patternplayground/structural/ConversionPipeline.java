@@ -0,0 +1,425 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Пакетная конвертация конвейером</p>
+ * <p>{@link Facade.VideoConversionFacade} конвертирует один файл за вызов, и стадии ждут друг друга.
+ * Здесь чтение, кодирование и сведение звука — отдельные стадии со своими потоками, связанные ограниченными очередями
+ * кусков: пока один файл кодируется, следующий уже читается.</p>
+ * <p>Файл, формат которого не меняется, читатель копирует целиком через {@code transferTo}, минуя остальные стадии.</p>
+ * <p>Очереди и пул буферов ограничены, поэтому если сведение не успевает, встают сначала кодировщики, потом читатели,
+ * а затем и {@link #submit(Path, Path, String)} — память конвейера не растёт. Куски одного файла могут обрабатываться
+ * не по порядку: запись идёт по смещению куска в файле.</p>
+ */
+public class ConversionPipeline implements AutoCloseable {
+    public enum Stage {READ, CONVERT, MIX}
+
+    private final Facade facade;
+    private final Facade.CodecFactory codecFactory;
+    private final Facade.BitrateReader bitrateReader;
+    private final Facade.AudioMixer audioMixer;
+    private final BlockingQueue<Job> jobs;
+    private final BlockingQueue<Chunk> toConvert;
+    private final BlockingQueue<Chunk> toMix;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final Map<Stage, Meter> meters = new EnumMap<>(Stage.class);
+    private final List<Thread> workers = new ArrayList<>();
+    /**
+     * Файлы, принятые в работу и ещё не завершённые; когда после закрытия их не остаётся, открывается {@link #drained}.
+     */
+    private final AtomicInteger running = new AtomicInteger();
+    private final CountDownLatch drained = new CountDownLatch(1);
+    private final long startedAtNanos = System.nanoTime();
+    private volatile boolean closed;
+
+    /**
+     * @param queueCapacity ёмкость каждой очереди между стадиями, в кусках (для очереди файлов — в файлах)
+     */
+    public ConversionPipeline(Facade facade, int readers, int converters, int mixers, int queueCapacity, int chunkSize) {
+        if (readers <= 0 || converters <= 0 || mixers <= 0 || queueCapacity <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("Thread counts, queue capacity and chunk size must be positive");
+        }
+        this.facade = facade;
+        this.codecFactory = facade.new CodecFactory();
+        this.bitrateReader = facade.new BitrateReader();
+        this.audioMixer = facade.new AudioMixer();
+        this.jobs = new ArrayBlockingQueue<>(queueCapacity);
+        this.toConvert = new ArrayBlockingQueue<>(queueCapacity);
+        this.toMix = new ArrayBlockingQueue<>(queueCapacity);
+        // Буферов хватает заполнить обе очереди и занять все потоки — больше конвейеру не нужно
+        int bufferCount = 2 * queueCapacity + readers + converters + mixers;
+        this.buffers = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            buffers.add(ByteBuffer.allocateDirect(chunkSize));
+        }
+        meters.put(Stage.READ, new Meter(jobs));
+        meters.put(Stage.CONVERT, new Meter(toConvert));
+        meters.put(Stage.MIX, new Meter(toMix));
+        start(Stage.READ, readers, this::readLoop);
+        start(Stage.CONVERT, converters, this::convertLoop);
+        start(Stage.MIX, mixers, this::mixLoop);
+    }
+
+    /**
+     * <p>Поставить файл в очередь; ждёт, если очередь файлов заполнена.</p>
+     * <p>Если ожидание прервут, файл в очередь не попадает.</p>
+     *
+     * @return future с результатом, как у {@link Facade.VideoConversionFacade#convertVideo(Path, Path, String)}
+     * @throws IllegalArgumentException если {@code source} и {@code target} — один и тот же файл
+     */
+    public CompletableFuture<File> submit(Path source, Path target, String format) throws IOException, InterruptedException {
+        // Выходной файл открывается с усечением, и источник стёрся бы раньше, чем его прочитают
+        if (Files.exists(target) && Files.isSameFile(source, target)) {
+            throw new IllegalArgumentException("Source and target are the same file: " + source);
+        }
+        // Счётчик раньше проверки флага: close() либо дождётся этого файла, либо submit увидит закрытие
+        running.incrementAndGet();
+        if (closed) {
+            finished();
+            throw new IllegalStateException("Pipeline is closed");
+        }
+        Job job = new Job(source, target, format);
+        try {
+            meters.get(Stage.READ).put(job);
+        } catch (InterruptedException e) {
+            finished();
+            throw e;
+        }
+        // Если файл уже готов, finished() вызовется прямо здесь
+        job.result.whenComplete((file, error) -> finished());
+        return job.result;
+    }
+
+    /**
+     * Текущие показатели стадий в порядке конвейера.
+     */
+    public Map<Stage, StageStats> stats() {
+        long elapsed = System.nanoTime() - startedAtNanos;
+        Map<Stage, StageStats> result = new EnumMap<>(Stage.class);
+        for (Map.Entry<Stage, Meter> entry : meters.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot(entry.getKey(), elapsed));
+        }
+        return result;
+    }
+
+    /**
+     * <p>Дождаться уже поставленных файлов и остановить потоки.</p>
+     * <p>Если ожидание прервут, метод возвращается с выставленным флагом прерывания, а уже поставленные файлы
+     * дорабатывают фоновые потоки конвейера.</p>
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            if (running.get() > 0) {
+                drained.await();
+            }
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Оба поля volatile: либо последний файл увидит закрытие, либо {@link #close()} увидит ноль.
+     */
+    private void finished() {
+        if (running.decrementAndGet() == 0 && closed) {
+            drained.countDown();
+        }
+    }
+
+    private void start(Stage stage, int threads, Runnable loop) {
+        for (int i = 1; i <= threads; i++) {
+            Thread worker = new Thread(loop, "conversion-" + stage.name().toLowerCase() + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private void readLoop() {
+        Meter meter = meters.get(Stage.READ);
+        try {
+            while (true) {
+                Job job = jobs.take();
+                try (FileChannel in = FileChannel.open(job.source, StandardOpenOption.READ)) {
+                    job.open(codecFactory.extract(facade.new VideoFile(job.source.getFileName().toString())),
+                            codecFactory.destination(job.format));
+                    if (job.sourceCodec == job.destinationCodec) {
+                        long started = System.nanoTime();
+                        bitrateReader.passthrough(in, job.out);
+                        meter.record(System.nanoTime() - started, 0, in.size());
+                    } else {
+                        readChunks(job, in, meter);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    job.fail(e);
+                }
+                job.chunkDone();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readChunks(Job job, FileChannel in, Meter meter) throws IOException, InterruptedException {
+        long position = 0;
+        while (!job.failed()) {
+            // Ожидание свободного буфера — это давление сзади, а не работа стадии
+            ByteBuffer buffer = buffers.take();
+            long started = System.nanoTime();
+            boolean hasData;
+            try {
+                hasData = bitrateReader.read(in, buffer, job.sourceCodec);
+            } catch (IOException | RuntimeException e) {
+                buffers.put(buffer);
+                throw e;
+            }
+            if (!hasData) {
+                buffers.put(buffer);
+                return;
+            }
+            int size = buffer.remaining();
+            meter.record(System.nanoTime() - started, 1, size);
+            job.pending.incrementAndGet();
+            meters.get(Stage.CONVERT).put(new Chunk(job, buffer, position));
+            position += size;
+        }
+    }
+
+    private void convertLoop() {
+        Meter meter = meters.get(Stage.CONVERT);
+        try {
+            while (true) {
+                Chunk chunk = toConvert.take();
+                long started = System.nanoTime();
+                if (!chunk.job.failed()) {
+                    try {
+                        bitrateReader.convert(chunk.buffer, chunk.job.destinationCodec);
+                    } catch (RuntimeException e) {
+                        chunk.job.fail(e);
+                    }
+                }
+                meter.record(System.nanoTime() - started, 1, chunk.buffer.remaining());
+                meters.get(Stage.MIX).put(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void mixLoop() {
+        Meter meter = meters.get(Stage.MIX);
+        try {
+            while (true) {
+                Chunk chunk = toMix.take();
+                long started = System.nanoTime();
+                int bytes = chunk.buffer.remaining();
+                if (!chunk.job.failed()) {
+                    try {
+                        audioMixer.fix(chunk.buffer);
+                        long position = chunk.position;
+                        while (chunk.buffer.hasRemaining()) {
+                            position += chunk.job.out.write(chunk.buffer, position);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        chunk.job.fail(e);
+                    }
+                }
+                meter.record(System.nanoTime() - started, 1, bytes);
+                buffers.put(chunk.buffer);
+                chunk.job.chunkDone();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Файл в работе. Читатель держит одну ссылку до конца файла, каждый кусок — ещё одну до записи;
+     * последний освободивший закрывает выходной файл и завершает future.
+     */
+    private static final class Job {
+        private final Path source;
+        private final Path target;
+        private final String format;
+        private final CompletableFuture<File> result = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private Facade.Codec sourceCodec;
+        private Facade.Codec destinationCodec;
+        private volatile FileChannel out;
+
+        Job(Path source, Path target, String format) {
+            this.source = source;
+            this.target = target;
+            this.format = format;
+        }
+
+        void open(Facade.Codec sourceCodec, Facade.Codec destinationCodec) throws IOException {
+            this.sourceCodec = sourceCodec;
+            this.destinationCodec = destinationCodec;
+            out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        boolean failed() {
+            return failure.get() != null;
+        }
+
+        void fail(Throwable error) {
+            failure.compareAndSet(null, error);
+        }
+
+        void chunkDone() {
+            if (pending.decrementAndGet() != 0) {
+                return;
+            }
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            Throwable error = failure.get();
+            if (error == null) {
+                result.complete(target.toFile());
+            } else {
+                result.completeExceptionally(error);
+            }
+        }
+    }
+
+    private static final class Chunk {
+        private final Job job;
+        private final ByteBuffer buffer;
+        private final long position;
+
+        Chunk(Job job, ByteBuffer buffer, long position) {
+            this.job = job;
+            this.buffer = buffer;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Счётчики стадии; глубина — это очередь на входе стадии.
+     */
+    private static final class Meter {
+        private final BlockingQueue<?> input;
+        private final LongAdder items = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+        Meter(BlockingQueue<?> input) {
+            this.input = input;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> void put(T item) throws InterruptedException {
+            ((BlockingQueue<T>) input).put(item);
+            maxDepth.accumulate(input.size());
+        }
+
+        void record(long nanos, long count, long byteCount) {
+            busyNanos.add(nanos);
+            items.add(count);
+            bytes.add(byteCount);
+        }
+
+        StageStats snapshot(Stage stage, long elapsedNanos) {
+            return new StageStats(stage, items.sum(), bytes.sum(), busyNanos.sum(), elapsedNanos,
+                    input.size(), (int) maxDepth.get());
+        }
+    }
+
+    /**
+     * Снимок показателей стадии.
+     */
+    public static final class StageStats {
+        private final Stage stage;
+        private final long chunks;
+        private final long bytes;
+        private final long busyNanos;
+        private final long elapsedNanos;
+        private final int queueDepth;
+        private final int maxQueueDepth;
+
+        StageStats(Stage stage, long chunks, long bytes, long busyNanos, long elapsedNanos, int queueDepth, int maxQueueDepth) {
+            this.stage = stage;
+            this.chunks = chunks;
+            this.bytes = bytes;
+            this.busyNanos = busyNanos;
+            this.elapsedNanos = elapsedNanos;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public long getChunks() {
+            return chunks;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Суммарное время работы потоков стадии, без ожидания в очередях.
+         */
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        /**
+         * Байт в секунду с момента создания конвейера.
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d chunks, %.1f MB/s, busy %d ms, queue %d (max %d)",
+                    stage, chunks, getThroughput() / (1 << 20), busyNanos / 1_000_000, queueDepth, maxQueueDepth);
+        }
+    }
+}
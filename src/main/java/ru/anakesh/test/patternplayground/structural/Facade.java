@@ -1,6 +1,17 @@
 package ru.anakesh.test.patternplayground.structural;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Фасад</p>
@@ -18,6 +29,18 @@ import java.io.File;
  * </p>
  */
 public class Facade {
+    /**
+     * Прямой буфер кусков на поток: выделять прямой буфер дорого, а освобождает его только сборщик мусора.
+     */
+    private static final ThreadLocal<ByteBuffer> CHUNK_BUFFERS = new ThreadLocal<>();
+
+    private final CodecRegistry codecs = new CodecRegistry();
+
+    public Facade() {
+        codecs.register(new MPEG4CompressionCodec());
+        codecs.register(new OggCompressionCodec());
+    }
+
     public static void main(String[] args) {
         new Facade().run();
     }
@@ -27,16 +50,63 @@ public class Facade {
         File mp4Video = converter.convertVideo("youtubevideo.ogg", "mp4");
     }
 
+    /**
+     * <p>Кодек. В потоковом режиме обрабатывает файл кусками на месте — байты между {@code position} и {@code limit}.</p>
+     * <p>Это точка расширения: новый формат подключается регистрацией своей реализации в {@link CodecRegistry}.
+     * Экземпляр один на формат и используется из разных потоков, поэтому кодек не должен хранить состояние между кусками.</p>
+     */
     interface Codec {
+        /**
+         * Формат в нижнем регистре, как расширение файла.
+         */
+        String getType();
+
+        default void decode(ByteBuffer chunk) {
+        }
+
+        default void encode(ByteBuffer chunk) {
+        }
+    }
+
+    /**
+     * <p>Реестр кодеков</p>
+     * <p>Кодеки без состояния, так что на формат хватает одного экземпляра: поиск — одно обращение к хеш-таблице
+     * без создания объектов и без цепочки сравнений строк.</p>
+     */
+    class CodecRegistry {
+        private final Map<String, Codec> codecs = new ConcurrentHashMap<>();
+
+        /**
+         * @return кодек, ранее зарегистрированный для этого формата, или {@code null}
+         */
+        public Codec register(Codec codec) {
+            return codecs.put(codec.getType(), codec);
+        }
+
+        public boolean supports(String format) {
+            return codecs.containsKey(format);
+        }
+
+        public Codec lookup(String format) {
+            Codec codec = codecs.get(format);
+            if (codec == null) {
+                throw new IllegalArgumentException("No codec registered for format '" + format + "'");
+            }
+            return codec;
+        }
     }
 
     class VideoFile {
-        private String name;
-        private String codecType;
+        private final String name;
+        private final String codecType;
 
+        /**
+         * Формат — расширение после последней точки в нижнем регистре; без точки — пустая строка.
+         */
         public VideoFile(String name) {
             this.name = name;
-            this.codecType = name.substring(name.indexOf(".") + 1);
+            int dot = name.lastIndexOf('.');
+            this.codecType = dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
         }
 
         public String getCodecType() {
@@ -51,22 +121,28 @@ public class Facade {
     class MPEG4CompressionCodec implements Codec {
         public String type = "mp4";
 
+        @Override
+        public String getType() {
+            return type;
+        }
     }
 
     class OggCompressionCodec implements Codec {
         public String type = "ogg";
+
+        @Override
+        public String getType() {
+            return type;
+        }
     }
 
     class CodecFactory {
         public Codec extract(VideoFile file) {
-            String type = file.getCodecType();
-            if (type.equals("mp4")) {
-                System.out.println("CodecFactory: extracting mpeg audio...");
-                return new MPEG4CompressionCodec();
-            } else {
-                System.out.println("CodecFactory: extracting ogg audio...");
-                return new OggCompressionCodec();
-            }
+            return codecs.lookup(file.getCodecType());
+        }
+
+        public Codec destination(String format) {
+            return codecs.lookup(format);
         }
     }
 
@@ -80,6 +156,47 @@ public class Facade {
             System.out.println("BitrateReader: writing file...");
             return buffer;
         }
+
+        /**
+         * <p>Прочитать следующий кусок: буфер заполняется целиком, короче бывает только последний кусок файла.</p>
+         *
+         * @return есть ли в куске данные; {@code false} — файл кончился
+         */
+        public boolean read(ReadableByteChannel source, ByteBuffer chunk, Codec codec) throws IOException {
+            ((Buffer) chunk).clear();
+            while (chunk.hasRemaining() && source.read(chunk) >= 0) {
+                // FileChannel блокирующий: read возвращает либо прочитанные байты, либо -1
+            }
+            ((Buffer) chunk).flip();
+            if (!chunk.hasRemaining()) {
+                return false;
+            }
+            codec.decode(chunk);
+            return true;
+        }
+
+        public void convert(ByteBuffer chunk, Codec codec) {
+            codec.encode(chunk);
+        }
+
+        /**
+         * <p>Тот же формат на входе и выходе: перекодировать нечего, байты копируются через {@link FileChannel#transferTo}
+         * — ядром, без буферов в процессе. Если источник укоротили во время копирования, копируется то, что осталось.</p>
+         */
+        public void passthrough(FileChannel in, FileChannel out) throws IOException {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                if (transferred == 0) {
+                    if (position >= in.size()) {
+                        return;
+                    }
+                    throw new IOException("No progress copying at position " + position + " of " + in.size());
+                }
+                position += transferred;
+            }
+        }
     }
 
     class AudioMixer {
@@ -87,28 +204,86 @@ public class Facade {
             System.out.println("AudioMixer: fixing audio...");
             return new File("tmp");
         }
+
+        public void fix(ByteBuffer chunk) {
+        }
     }
 
+    /**
+     * <p>Фасад конвертации.</p>
+     * <p>Потоковый режим {@link #convertVideo(Path, Path, String, int)} гоняет файл через те же стадии кусками
+     * фиксированного размера: прямой буфер, один на поток и переиспользуемый от конвертации к конвертации,
+     * чтение и запись через {@link FileChannel} без копий в кучу. Память не зависит от размера файла.
+     * Если формат не меняется, стадии пропускаются и файл копируется как есть.</p>
+     */
     class VideoConversionFacade {
+        static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
         private CodecFactory codecFactory = new CodecFactory();
         private BitrateReader bitrateReader = new BitrateReader();
+        private AudioMixer audioMixer = new AudioMixer();
 
         public File convertVideo(String fileName, String format) {
 
             System.out.println("VideoConversionFacade: conversion started.");
             VideoFile file = new VideoFile(fileName);
             Codec sourceCodec = codecFactory.extract(file);
-            Codec destinationCodec;
-            if (format.equals("mp4")) {
-                destinationCodec = new OggCompressionCodec();
-            } else {
-                destinationCodec = new MPEG4CompressionCodec();
-            }
+            Codec destinationCodec = codecFactory.destination(format);
             VideoFile buffer = bitrateReader.read(file, sourceCodec);
             VideoFile intermediateResult = bitrateReader.convert(buffer, destinationCodec);
             File result = (new AudioMixer()).fix(intermediateResult);
             System.out.println("VideoConversionFacade: conversion completed.");
             return result;
         }
+
+        public File convertVideo(Path source, Path target, String format) throws IOException {
+            return convertVideo(source, target, format, DEFAULT_CHUNK_SIZE);
+        }
+
+        /**
+         * Потоковая конвертация {@code source} в {@code target}: чтение и раскодирование, кодирование, сведение звука
+         * и запись — по куску за раз. {@code target} перезаписывается, поэтому совпадать с {@code source} не может.
+         */
+        public File convertVideo(Path source, Path target, String format, int chunkSize) throws IOException {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+            }
+            if (Files.exists(target) && Files.isSameFile(source, target)) {
+                throw new IllegalArgumentException("Source and target are the same file: " + source);
+            }
+            Codec sourceCodec = codecFactory.extract(new VideoFile(source.getFileName().toString()));
+            Codec destinationCodec = codecFactory.destination(format);
+
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (sourceCodec == destinationCodec) {
+                    bitrateReader.passthrough(in, out);
+                    return target.toFile();
+                }
+                ByteBuffer chunk = chunkBuffer(chunkSize);
+                while (bitrateReader.read(in, chunk, sourceCodec)) {
+                    bitrateReader.convert(chunk, destinationCodec);
+                    audioMixer.fix(chunk);
+                    while (chunk.hasRemaining()) {
+                        out.write(chunk);
+                    }
+                }
+            }
+            return target.toFile();
+        }
+
+        /**
+         * Буфер потока ёмкостью ровно {@code chunkSize}; сам буфер растёт до самого большого запрошенного размера.
+         */
+        private ByteBuffer chunkBuffer(int chunkSize) {
+            ByteBuffer buffer = CHUNK_BUFFERS.get();
+            if (buffer == null || buffer.capacity() < chunkSize) {
+                buffer = ByteBuffer.allocateDirect(chunkSize);
+                CHUNK_BUFFERS.set(buffer);
+            }
+            ((Buffer) buffer).clear().limit(chunkSize);
+            return buffer.slice();
+        }
     }
 }
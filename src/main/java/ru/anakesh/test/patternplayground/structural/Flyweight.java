@@ -1,11 +1,17 @@
 package ru.anakesh.test.patternplayground.structural;
 
+import lombok.Getter;
+
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -40,23 +46,25 @@ public class Flyweight {
     }
 
     private void run() {
-        Forest forest = new Forest();
+        Forest forest = new Forest(new ArrayTreeStorage(TREES_TO_DRAW));
         for (int i = 0; i < Math.floor(TREES_TO_DRAW / TREE_TYPES); i++) {
             forest.plantTree(random(0, CANVAS_SIZE), random(0, CANVAS_SIZE),
                     "Summer Oak", Color.GREEN, "Oak texture stub");
             forest.plantTree(random(0, CANVAS_SIZE), random(0, CANVAS_SIZE),
                     "Autumn Oak", Color.ORANGE, "Autumn Oak texture stub");
         }
-        forest.setSize(CANVAS_SIZE, CANVAS_SIZE);
-        forest.setVisible(true);
+        JFrame frame = new JFrame();
+        frame.setContentPane(forest);
+        frame.setSize(CANVAS_SIZE, CANVAS_SIZE);
+        frame.setVisible(true);
 
         System.out.println(TREES_TO_DRAW + " trees drawn");
         System.out.println("---------------------");
         System.out.println("Memory usage:");
-        System.out.println("Tree size (8 bytes) * " + TREES_TO_DRAW);
+        System.out.println("Tree size (10 bytes) * " + TREES_TO_DRAW);
         System.out.println("+ TreeTypes size (~30 bytes) * " + TREE_TYPES + "");
         System.out.println("---------------------");
-        System.out.println("Total: " + ((TREES_TO_DRAW * 8 + TREE_TYPES * 30) / 1024 / 1024) +
+        System.out.println("Total: " + ((TREES_TO_DRAW * 10 + TREE_TYPES * 30) / 1024 / 1024) +
                 "MB (instead of " + ((TREES_TO_DRAW * 38) / 1024 / 1024) + "MB)");
     }
 
@@ -80,10 +88,18 @@ public class Flyweight {
         }
     }
 
-    class TreeType {
-        private String name;
-        private Color color;
-        private String otherTreeData;
+    @Getter
+    static class TreeType {
+        /**
+         * Рисунок дерева в точке (x, y) занимает {@code [x - 5, x + 5) × [y - 10, y + 5)}.
+         */
+        static final int HALF_WIDTH = 5;
+        static final int HEIGHT_ABOVE = 10;
+        static final int HEIGHT_BELOW = 5;
+
+        private final String name;
+        private final Color color;
+        private final String otherTreeData;
 
         public TreeType(String name, Color color, String otherTreeData) {
             this.name = name;
@@ -99,41 +115,386 @@ public class Flyweight {
         }
     }
 
-    class TreeFactory {
+    /**
+     * <p>Общая на процесс таблица типов деревьев, ключ — всё внутреннее состояние: по имени хранятся все его варианты
+     * цвета и текстуры.</p>
+     * <p>Найденный тип отдаётся без блокировок и выделения памяти, а отсутствующий создаётся ровно один раз,
+     * сколько бы потоков ни запросили его одновременно: массив вариантов имени заменяется атомарно.</p>
+     */
+    static class TreeFactory {
+        private static final ConcurrentMap<String, TreeType[]> treeTypes = new ConcurrentHashMap<>();
+
+        public static TreeType getTreeType(String name, Color color, String otherTreeData) {
+            TreeType result = find(treeTypes.get(name), color, otherTreeData);
+            if (result == null) {
+                TreeType[] variants = treeTypes.compute(name, (key, current) -> {
+                    if (find(current, color, otherTreeData) != null) {
+                        return current;
+                    }
+                    TreeType[] extended = current == null ? new TreeType[1] : Arrays.copyOf(current, current.length + 1);
+                    extended[extended.length - 1] = new TreeType(name, color, otherTreeData);
+                    return extended;
+                });
+                result = find(variants, color, otherTreeData);
+            }
+            return result;
+        }
+
+        static int size() {
+            int size = 0;
+            for (TreeType[] variants : treeTypes.values()) {
+                size += variants.length;
+            }
+            return size;
+        }
+
+        private static TreeType find(TreeType[] variants, Color color, String otherTreeData) {
+            if (variants != null) {
+                for (TreeType variant : variants) {
+                    if (Objects.equals(variant.color, color) && Objects.equals(variant.otherTreeData, otherTreeData)) {
+                        return variant;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * <p>Хранилище деревьев леса.</p>
+     * <p>Само по себе не потокобезопасно — вызовы упорядочивает {@link Forest}.</p>
+     */
+    interface TreeStorage {
+        void add(int x, int y, TreeType type);
+
+        int size();
+
         /**
-         * Должен быть static
+         * Координаты и тип дерева по номеру посадки, от 0 до {@link #size()}.
          */
-        Map<String, TreeType> treeTypes = new HashMap<>();
+        int x(int tree);
+
+        int y(int tree);
+
+        TreeType type(int tree);
+
+        void paint(Graphics graphics);
+    }
+
+    /**
+     * Каждое дерево — отдельный объект {@link Tree} в списке: вместе с заголовком, ссылкой на {@link Flyweight}
+     * и ссылкой из списка это около 36 байт на дерево вместо 8.
+     */
+    class ObjectTreeStorage implements TreeStorage {
+        private final List<Tree> trees = new ArrayList<>();
+
+        @Override
+        public void add(int x, int y, TreeType type) {
+            trees.add(new Tree(x, y, type));
+        }
+
+        @Override
+        public int size() {
+            return trees.size();
+        }
 
+        @Override
+        public int x(int tree) {
+            return trees.get(tree).x;
+        }
+
+        @Override
+        public int y(int tree) {
+            return trees.get(tree).y;
+        }
+
+        @Override
+        public TreeType type(int tree) {
+            return trees.get(tree).type;
+        }
+
+        @Override
+        public void paint(Graphics graphics) {
+            for (Tree tree : trees) {
+                tree.draw(graphics);
+            }
+        }
+    }
+
+    /**
+     * <p>Деревья по столбцам: координаты в {@code int[]}, тип — номер в {@code short[]} по {@link TreeTypeTable} этого леса.
+     * 10 байт на дерево без заголовков и ссылок, отрисовка идёт прямо по массивам.</p>
+     */
+    static class ArrayTreeStorage implements TreeStorage {
+        private static final int MAX_TREES = Integer.MAX_VALUE - 8;
+
+        private int[] x;
+        private int[] y;
+        private short[] typeIndex;
+        private int size;
+        private final TreeTypeTable types = new TreeTypeTable();
+
+        ArrayTreeStorage() {
+            this(16);
+        }
 
         /**
-         * Должен быть static
+         * Сразу под {@code capacity} деревьев — без запаса, который оставляет рост массивов.
          */
-        public TreeType getTreeType(String name, Color color, String otherTreeData) {
-            TreeType result = treeTypes.get(name);
-            if (result == null) {
-                result = new TreeType(name, color, otherTreeData);
-                treeTypes.put(name, result);
+        ArrayTreeStorage(int capacity) {
+            x = new int[capacity];
+            y = new int[capacity];
+            typeIndex = new short[capacity];
+        }
+
+        @Override
+        public void add(int x, int y, TreeType type) {
+            if (size == this.x.length) {
+                grow();
             }
-            return result;
+            this.x[size] = x;
+            this.y[size] = y;
+            typeIndex[size] = (short) types.indexOf(type);
+            size++;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int x(int tree) {
+            return x[tree];
+        }
+
+        @Override
+        public int y(int tree) {
+            return y[tree];
+        }
+
+        @Override
+        public TreeType type(int tree) {
+            return types.get(typeIndex[tree] & 0xFFFF);
+        }
+
+        @Override
+        public void paint(Graphics graphics) {
+            for (int i = 0; i < size; i++) {
+                types.get(typeIndex[i] & 0xFFFF).draw(graphics, x[i], y[i]);
+            }
+        }
+
+        private void grow() {
+            if (size == MAX_TREES) {
+                throw new IllegalStateException("Forest holds at most " + MAX_TREES + " trees");
+            }
+            int capacity = (int) Math.min(size + (size >> 1) + 16L, MAX_TREES);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            typeIndex = Arrays.copyOf(typeIndex, capacity);
+        }
+    }
+
+    /**
+     * <p>Типы деревьев одного леса под номерами с нуля в порядке появления — номер помещается в {@code short}.</p>
+     * <p>В одном лесу может быть до {@value #MAX_TYPES} типов.</p>
+     */
+    static class TreeTypeTable {
+        static final int MAX_TYPES = 1 << 16;
+
+        private TreeType[] types = new TreeType[4];
+        private int size;
+        private final Map<TreeType, Integer> indexes = new IdentityHashMap<>();
+        private TreeType lastType;
+        private int lastIndex;
+
+        /**
+         * Номер типа; новый тип получает следующий номер.
+         */
+        int indexOf(TreeType type) {
+            // Деревья обычно сажают сериями одного типа
+            if (type == lastType) {
+                return lastIndex;
+            }
+            Integer index = indexes.get(type);
+            if (index == null) {
+                if (size == MAX_TYPES) {
+                    throw new IllegalStateException("Forest holds at most " + MAX_TYPES + " tree types");
+                }
+                if (size == types.length) {
+                    types = Arrays.copyOf(types, size * 2);
+                }
+                index = size;
+                types[size++] = type;
+                indexes.put(type, index);
+            }
+            lastType = type;
+            lastIndex = index;
+            return index;
+        }
+
+        TreeType get(int index) {
+            return types[index];
+        }
+
+        int size() {
+            return size;
         }
     }
 
-    class Forest extends JFrame {
-        private TreeFactory treeFactory = new TreeFactory();
-        private List<Tree> trees = new ArrayList<>();
+    /**
+     * <p>Лес — контекст легковесов: деревья и их общие типы.</p>
+     * <p>С пространственным индексом ({@link TreeGrid}) отрисовка берёт только деревья, задевающие
+     * {@link Graphics#getClipBounds()}, а поиск в прямоугольнике и ближайшего дерева смотрит только соседние ячейки.
+     * Без индекса — тот же результат полным проходом. Индекс держит в куче по 4 байта на дерево,
+     * так что лесу, который должен жить вне кучи, его лучше не включать.</p>
+     */
+    class Forest extends JPanel {
+        private final TreeStorage trees;
+        private final TreeGrid grid;
+
+        public Forest() {
+            this(new ObjectTreeStorage());
+        }
+
+        public Forest(TreeStorage trees) {
+            this(trees, false);
+        }
+
+        /**
+         * Уже посаженные в {@code trees} деревья (например, открытого заново {@link MappedTreeStorage}) сразу индексируются.
+         */
+        public Forest(TreeStorage trees, boolean indexed) {
+            this.trees = trees;
+            this.grid = indexed ? new TreeGrid(trees) : null;
+            if (indexed) {
+                for (int tree = 0; tree < trees.size(); tree++) {
+                    grid.add(tree, trees.x(tree), trees.y(tree));
+                }
+            }
+        }
 
+        /**
+         * Можно вызывать из нескольких потоков.
+         */
         public void plantTree(int x, int y, String name, Color color, String otherTreeData) {
-            TreeType type = treeFactory.getTreeType(name, color, otherTreeData);
-            Tree tree = new Tree(x, y, type);
-            trees.add(tree);
+            TreeType type = TreeFactory.getTreeType(name, color, otherTreeData);
+            synchronized (trees) {
+                if (grid == null) {
+                    trees.add(x, y, type);
+                    return;
+                }
+                // Сетка может отказать дереву слишком далеко от остальных — до того, как оно посажено
+                grid.add(trees.size(), x, y);
+                try {
+                    trees.add(x, y, type);
+                } catch (RuntimeException e) {
+                    grid.removeLast(x, y);
+                    throw e;
+                }
+            }
+        }
+
+        public int treeCount() {
+            synchronized (trees) {
+                return trees.size();
+            }
+        }
+
+        public int getTreeX(int tree) {
+            synchronized (trees) {
+                return trees.x(checkTree(tree));
+            }
+        }
+
+        public int getTreeY(int tree) {
+            synchronized (trees) {
+                return trees.y(checkTree(tree));
+            }
+        }
+
+        public TreeType getTreeType(int tree) {
+            synchronized (trees) {
+                return trees.type(checkTree(tree));
+            }
+        }
+
+        /**
+         * Номера деревьев, стоящих внутри {@code area}, по возрастанию.
+         */
+        public int[] findTrees(Rectangle area) {
+            synchronized (trees) {
+                if (grid != null) {
+                    return grid.find(area.x, area.y, area.x + area.width, area.y + area.height);
+                }
+                int[] found = new int[16];
+                int count = 0;
+                for (int tree = 0; tree < trees.size(); tree++) {
+                    if (area.contains(trees.x(tree), trees.y(tree))) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = tree;
+                    }
+                }
+                return Arrays.copyOf(found, count);
+            }
+        }
+
+        /**
+         * Номер ближайшего к точке дерева (из равноудалённых — посаженного раньше) или {@code -1}, если лес пуст.
+         */
+        public int findNearestTree(int x, int y) {
+            synchronized (trees) {
+                if (grid != null) {
+                    return grid.nearest(x, y);
+                }
+                int nearest = -1;
+                long nearestDistance = Long.MAX_VALUE;
+                for (int tree = 0; tree < trees.size(); tree++) {
+                    long distance = TreeGrid.distance(x, y, trees.x(tree), trees.y(tree));
+                    if (distance < nearestDistance) {
+                        nearest = tree;
+                        nearestDistance = distance;
+                    }
+                }
+                return nearest;
+            }
         }
 
+        /**
+         * С индексом рисуются только деревья, задевающие область отсечения, — в порядке посадки,
+         * чтобы перекрытия выглядели как при полной отрисовке.
+         */
         @Override
         public void paint(Graphics graphics) {
-            for (Tree tree : trees) {
-                tree.draw(graphics);
+            synchronized (trees) {
+                Rectangle clip = graphics.getClipBounds();
+                if (grid == null || clip == null) {
+                    trees.paint(graphics);
+                    return;
+                }
+                // Дерево видно, если его рисунок пересекает clip
+                int fromX = clip.x - TreeType.HALF_WIDTH + 1;
+                int fromY = clip.y - TreeType.HEIGHT_BELOW + 1;
+                int toX = clip.x + clip.width + TreeType.HALF_WIDTH;
+                int toY = clip.y + clip.height + TreeType.HEIGHT_ABOVE;
+                if (grid.isWithin(fromX, fromY, toX, toY)) {
+                    trees.paint(graphics);
+                    return;
+                }
+                for (int tree : grid.find(fromX, fromY, toX, toY)) {
+                    trees.type(tree).draw(graphics, trees.x(tree), trees.y(tree));
+                }
+            }
+        }
+
+        private int checkTree(int tree) {
+            if (tree < 0 || tree >= trees.size()) {
+                throw new IndexOutOfBoundsException("Tree " + tree + " of " + trees.size());
             }
+            return tree;
         }
     }
 }
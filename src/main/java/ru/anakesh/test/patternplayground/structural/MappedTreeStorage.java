@@ -0,0 +1,248 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import java.awt.*;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Деревья леса в файле, отображённом в память</p>
+ * <p>Файл начинается с заголовка {@code "TREE"}, версии и числа деревьев, за ним идут записи по {@value #RECORD_SIZE} байт:
+ * x, y и номер типа (2 байта), little-endian. Файл отображается сегментами по {@value #RECORDS_PER_SEGMENT} записей
+ * и растёт сегментом за раз. Типы деревьев лежат рядом, в файле с суффиксом {@code .types}, и переписываются целиком
+ * при появлении нового типа — до того, как на него сошлётся первая запись.</p>
+ * <p>Число деревьев в заголовке обновляется после каждой записи, поэтому открытие после остановки процесса
+ * видит все посаженные деревья. Открытие читает только заголовок и типы, а куча не зависит от числа деревьев —
+ * записи живут в страничном кэше ОС.</p>
+ * <p>Не потокобезопасен, как и другие {@link Flyweight.TreeStorage}. До 2^31 - 1 деревьев.</p>
+ */
+final class MappedTreeStorage implements Flyweight.TreeStorage, Closeable {
+    static final int RECORD_SIZE = 10;
+    static final int RECORDS_PER_SEGMENT = 1 << 22;
+
+    private static final int MAGIC = 0x54524545; // "TREE"
+    private static final int TYPES_MAGIC = 0x54545950; // "TTYP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final long SEGMENT_SIZE = (long) RECORDS_PER_SEGMENT * RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final Path typesFile;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Flyweight.TreeTypeTable types = new Flyweight.TreeTypeTable();
+    private int size;
+
+    private MappedTreeStorage(FileChannel channel, Path typesFile) throws IOException {
+        this.channel = channel;
+        this.typesFile = typesFile;
+        this.header = map(0, HEADER_SIZE);
+    }
+
+    /**
+     * Открыть лес из {@code file} или создать пустой, если файла нет.
+     */
+    static MappedTreeStorage open(Path file) throws IOException {
+        Path typesFile = file.resolveSibling(file.getFileName() + ".types");
+        boolean exists = Files.exists(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            MappedTreeStorage storage = new MappedTreeStorage(channel, typesFile);
+            if (exists) {
+                storage.load(file);
+            } else {
+                storage.header.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, 0);
+            }
+            return storage;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void add(int x, int y, Flyweight.TreeType type) {
+        int typeCount = types.size();
+        int typeIndex = types.indexOf(type);
+        if (types.size() != typeCount) {
+            writeTypes();
+        }
+        int segment = size / RECORDS_PER_SEGMENT;
+        if (segment == segments.size()) {
+            if (size == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Forest holds at most " + Integer.MAX_VALUE + " trees");
+            }
+            segments.add(mapSegment(segment));
+        }
+        int offset = size % RECORDS_PER_SEGMENT * RECORD_SIZE;
+        segments.get(segment)
+                .putInt(offset, x)
+                .putInt(offset + 4, y)
+                .putShort(offset + 8, (short) typeIndex);
+        size++;
+        header.putLong(8, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int x(int tree) {
+        return record(tree).getInt(tree % RECORDS_PER_SEGMENT * RECORD_SIZE);
+    }
+
+    @Override
+    public int y(int tree) {
+        return record(tree).getInt(tree % RECORDS_PER_SEGMENT * RECORD_SIZE + 4);
+    }
+
+    @Override
+    public Flyweight.TreeType type(int tree) {
+        return types.get(record(tree).getShort(tree % RECORDS_PER_SEGMENT * RECORD_SIZE + 8) & 0xFFFF);
+    }
+
+    @Override
+    public void paint(Graphics graphics) {
+        for (int segment = 0, first = 0; first < size; segment++, first += RECORDS_PER_SEGMENT) {
+            ByteBuffer records = segments.get(segment);
+            int end = Math.min(RECORDS_PER_SEGMENT, size - first) * RECORD_SIZE;
+            for (int offset = 0; offset < end; offset += RECORD_SIZE) {
+                types.get(records.getShort(offset + 8) & 0xFFFF)
+                        .draw(graphics, records.getInt(offset), records.getInt(offset + 4));
+            }
+        }
+    }
+
+    /**
+     * Сбросить записи на диск — без этого они переживают остановку процесса, но не ОС.
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        header.force();
+    }
+
+    /**
+     * Сбросить записи и закрыть файл. Отображения освобождает сборщик мусора.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private ByteBuffer record(int tree) {
+        return segments.get(tree / RECORDS_PER_SEGMENT);
+    }
+
+    private void load(Path file) throws IOException {
+        if (channel.size() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a forest file: " + file);
+        }
+        int version = header.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported forest file version " + version);
+        }
+        long count = header.getLong(8);
+        if (count < 0 || count > Integer.MAX_VALUE || HEADER_SIZE + count * RECORD_SIZE > channel.size()) {
+            throw new IOException("Truncated forest file: " + file);
+        }
+        readTypes();
+        size = (int) count;
+        for (int segment = 0; (long) segment * RECORDS_PER_SEGMENT < size; segment++) {
+            segments.add(mapSegment(segment));
+        }
+    }
+
+    private MappedByteBuffer mapSegment(int segment) {
+        try {
+            return map(HEADER_SIZE + segment * SEGMENT_SIZE, SEGMENT_SIZE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map forest segment " + segment, e);
+        }
+    }
+
+    /**
+     * Отображение за концом файла удлиняет файл.
+     */
+    private MappedByteBuffer map(long position, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private void readTypes() throws IOException {
+        if (!Files.exists(typesFile)) {
+            return;
+        }
+        try (InputStream stream = Files.newInputStream(typesFile);
+             DataInputStream in = new DataInputStream(stream)) {
+            if (in.readInt() != TYPES_MAGIC) {
+                throw new IOException("Not a forest types file: " + typesFile);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = readNullable(in);
+                Color color = in.readBoolean() ? new Color(in.readInt(), true) : null;
+                String otherTreeData = readNullable(in);
+                types.indexOf(Flyweight.TreeFactory.getTreeType(name, color, otherTreeData));
+            }
+        }
+    }
+
+    private void writeTypes() {
+        try {
+            Path temporary = Files.createTempFile(typesFile.toAbsolutePath().getParent(),
+                    typesFile.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream stream = Files.newOutputStream(temporary);
+                     DataOutputStream out = new DataOutputStream(stream)) {
+                    out.writeInt(TYPES_MAGIC);
+                    out.writeInt(types.size());
+                    for (int i = 0; i < types.size(); i++) {
+                        Flyweight.TreeType type = types.get(i);
+                        writeNullable(out, type.getName());
+                        out.writeBoolean(type.getColor() != null);
+                        if (type.getColor() != null) {
+                            out.writeInt(type.getColor().getRGB());
+                        }
+                        writeNullable(out, type.getOtherTreeData());
+                    }
+                }
+                Files.move(temporary, typesFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write forest types to " + typesFile, e);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Раскладка колышков по отверстиям</p>
+ * <p>Каждое отверстие принимает не больше одного колышка, колышек попадает в самое маленькое свободное отверстие,
+ * в которое проходит по правилу {@link Adapter.RoundHole#fits(Adapter.RoundPeg)}. Колышки берутся по возрастанию радиуса,
+ * так что жадная раскладка даёт наибольшее возможное число пар.</p>
+ * <p>Радиусы один раз сортируются поразрядно в примитивные массивы вместе с исходными номерами, дальше раскладка —
+ * проход двумя указателями, а границы диапазонов находятся двоичным поиском. Большие входы делятся на непересекающиеся
+ * диапазоны радиусов колышков, которые раскладываются параллельно; раскладка при этом та же, что у последовательного
+ * прохода, колышек в колышек.</p>
+ */
+public class PegMatcher {
+    public static final int UNMATCHED = -1;
+
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final ForkJoinPool pool;
+
+    public PegMatcher() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public PegMatcher(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Разложить колышки по отверстиям; квадратные колышки передаются через {@link Adapter.SquarePegAdapter}.
+     */
+    public Matching match(List<Adapter.RoundHole> holes, List<? extends Adapter.RoundPeg> pegs) {
+        double[] holeRadii = new double[holes.size()];
+        for (int i = 0; i < holeRadii.length; i++) {
+            holeRadii[i] = holes.get(i).getRadius();
+        }
+        double[] pegRadii = new double[pegs.size()];
+        for (int i = 0; i < pegRadii.length; i++) {
+            pegRadii[i] = pegs.get(i).getRadius();
+        }
+        return match(holeRadii, pegRadii);
+    }
+
+    public Matching match(double[] holeRadii, double[] pegRadii) {
+        int[] holeOrder = sortedOrder(holeRadii);
+        int[] pegOrder = sortedOrder(pegRadii);
+        double[] holes = gather(holeRadii, holeOrder);
+        double[] pegs = gather(pegRadii, pegOrder);
+        // NaN сортируются в конец и никуда не проходят, как и в RoundHole.fits
+        int holeCount = withoutNaN(holes);
+        int pegCount = withoutNaN(pegs);
+
+        int[] holeOfSortedPeg = new int[pegs.length];
+        Arrays.fill(holeOfSortedPeg, UNMATCHED);
+        int matched = pegCount == 0 ? 0 : new Pass(holes, holeCount, pegs, pegCount, holeOfSortedPeg).run();
+
+        int[] holeOfPeg = new int[pegs.length];
+        for (int i = 0; i < pegs.length; i++) {
+            int hole = holeOfSortedPeg[i];
+            holeOfPeg[pegOrder[i]] = hole == UNMATCHED ? UNMATCHED : holeOrder[hole];
+        }
+        return new Matching(holeOfPeg, matched);
+    }
+
+    /**
+     * <p>Номера элементов {@code values} в порядке возрастания.</p>
+     * <p>Поразрядная сортировка по 8 бит ключа, в котором беззнаковый порядок совпадает с порядком double;
+     * разряды, одинаковые у всех ключей, пропускаются.</p>
+     */
+    static int[] sortedOrder(double[] values) {
+        int n = values.length;
+        long[] keys = new long[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            long bits = Double.doubleToLongBits(values[i]);
+            keys[i] = bits < 0 ? ~bits : bits | Long.MIN_VALUE;
+            order[i] = i;
+        }
+        long[] nextKeys = new long[n];
+        int[] nextOrder = new int[n];
+        int[] offsets = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(offsets, 0);
+            for (int i = 0; i < n; i++) {
+                offsets[(int) (keys[i] >>> shift & 0xFF) + 1]++;
+            }
+            boolean constant = false;
+            for (int digit = 1; digit <= 256; digit++) {
+                if (offsets[digit] == n) {
+                    constant = true;
+                    break;
+                }
+                offsets[digit] += offsets[digit - 1];
+            }
+            if (constant) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                int target = offsets[(int) (keys[i] >>> shift & 0xFF)]++;
+                nextKeys[target] = keys[i];
+                nextOrder[target] = order[i];
+            }
+            long[] swapKeys = keys;
+            keys = nextKeys;
+            nextKeys = swapKeys;
+            int[] swapOrder = order;
+            order = nextOrder;
+            nextOrder = swapOrder;
+        }
+        return order;
+    }
+
+    private static double[] gather(double[] values, int[] order) {
+        double[] sorted = new double[values.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = values[order[i]];
+        }
+        return sorted;
+    }
+
+    private static int withoutNaN(double[] sorted) {
+        int count = sorted.length;
+        while (count > 0 && Double.isNaN(sorted[count - 1])) {
+            count--;
+        }
+        return count;
+    }
+
+    /**
+     * Первый номер в {@code sorted[0 .. to)}, где значение не меньше {@code radius}.
+     */
+    private static int lowerBound(double[] sorted, int to, double radius) {
+        int low = 0;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < radius) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * <p>Одна раскладка по отсортированным радиусам.</p>
+     * <p>Пусть {@code lb(i)} — наименьшее отверстие, куда проходит {@code i}-й колышек. Жадный проход даёт ему отверстие
+     * {@code h(i) = max(h(i - 1) + 1, lb(i))}, то есть {@code h(i) = i + max(lb(j) - j)} по всем {@code j <= i}:
+     * раскладка — это префиксный максимум. Колышки делятся на диапазоны поровну; сначала каждый диапазон параллельно
+     * считает {@code lb} двумя указателями и свой префиксный максимум, затем последовательно по диапазонам — максимум
+     * всех предыдущих, и наконец диапазоны параллельно досчитывают номера отверстий. Колышки, чей номер вышел за
+     * последнее отверстие, остаются без пары.</p>
+     */
+    private class Pass {
+        private final double[] holes;
+        private final int holeCount;
+        private final double[] pegs;
+        private final int[] holeOfPeg;
+        private final int chunks;
+        private final int[] pegFrom;
+        private final int[] maxShift;
+        private final int[] matched;
+
+        Pass(double[] holes, int holeCount, double[] pegs, int pegCount, int[] holeOfPeg) {
+            this.holes = holes;
+            this.holeCount = holeCount;
+            this.pegs = pegs;
+            this.holeOfPeg = holeOfPeg;
+            int parallelism = pool.getParallelism();
+            this.chunks = pegCount < PARALLEL_THRESHOLD || parallelism == 1 ? 1 : Math.min(parallelism * 4, pegCount);
+            this.pegFrom = new int[chunks + 1];
+            for (int chunk = 0; chunk <= chunks; chunk++) {
+                pegFrom[chunk] = (int) ((long) pegCount * chunk / chunks);
+            }
+            this.maxShift = new int[chunks];
+            this.matched = new int[chunks];
+        }
+
+        int run() {
+            forEachChunk(this::shifts);
+
+            // Максимум сдвига по всем диапазонам до данного: с него диапазон продолжает префиксный максимум
+            int[] carried = new int[chunks];
+            int max = Integer.MIN_VALUE;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                carried[chunk] = max;
+                max = Math.max(max, maxShift[chunk]);
+            }
+            forEachChunk(chunk -> assign(chunk, carried[chunk]));
+
+            int total = 0;
+            for (int count : matched) {
+                total += count;
+            }
+            return total;
+        }
+
+        private void forEachChunk(IntConsumer action) {
+            if (chunks == 1) {
+                action.accept(0);
+            } else {
+                pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(action)).join();
+            }
+        }
+
+        /**
+         * Префиксный максимум {@code lb(i) - i} внутри диапазона — пока на месте будущих номеров отверстий.
+         */
+        private void shifts(int chunk) {
+            int peg = pegFrom[chunk];
+            int pegTo = pegFrom[chunk + 1];
+            int hole = lowerBound(holes, holeCount, pegs[peg]);
+            int max = Integer.MIN_VALUE;
+            for (; peg < pegTo; peg++) {
+                double radius = pegs[peg];
+                while (hole < holeCount && holes[hole] < radius) {
+                    hole++;
+                }
+                max = Math.max(max, hole - peg);
+                holeOfPeg[peg] = max;
+            }
+            maxShift[chunk] = max;
+        }
+
+        /**
+         * Номера отверстий диапазона с учётом сдвига предыдущих диапазонов.
+         */
+        private void assign(int chunk, int carried) {
+            int count = 0;
+            for (int peg = pegFrom[chunk]; peg < pegFrom[chunk + 1]; peg++) {
+                int hole = peg + Math.max(carried, holeOfPeg[peg]);
+                if (hole < holeCount) {
+                    holeOfPeg[peg] = hole;
+                    count++;
+                } else {
+                    holeOfPeg[peg] = UNMATCHED;
+                }
+            }
+            matched[chunk] = count;
+        }
+    }
+
+    /**
+     * Результат раскладки: номера отверстий по номерам колышков во входных массивах.
+     */
+    public static final class Matching {
+        private final int[] holeOfPeg;
+        private final int matched;
+
+        Matching(int[] holeOfPeg, int matched) {
+            this.holeOfPeg = holeOfPeg;
+            this.matched = matched;
+        }
+
+        /**
+         * Номер отверстия для колышка {@code peg} или {@link #UNMATCHED}.
+         */
+        public int holeOf(int peg) {
+            return holeOfPeg[peg];
+        }
+
+        public int pegCount() {
+            return holeOfPeg.length;
+        }
+
+        public int matchedCount() {
+            return matched;
+        }
+
+        public int unmatchedCount() {
+            return holeOfPeg.length - matched;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import java.util.Arrays;
+
+/**
+ * <p>Равномерная сетка над позициями деревьев леса</p>
+ * <p>Ячейка — квадрат {@value #CELL_SIZE}×{@value #CELL_SIZE} точек, в ней номера попавших туда деревьев по возрастанию.
+ * Сетка покрывает прямоугольник ячеек вокруг всех посаженных деревьев и при посадке за его краем удваивается в ту сторону:
+ * ячейки переезжают целиком, деревья заново не раскладываются.</p>
+ * <p>Поиск смотрит только ячейки, задевающие область, так что его цена растёт с числом найденных деревьев,
+ * а не с размером леса. Координаты деревьев читаются из {@link Flyweight.TreeStorage}, сетка хранит лишь номера.</p>
+ * <p>Рассчитана на деревья на ограниченном холсте. Не потокобезопасна — вызовы упорядочивает {@link Flyweight.Forest}.</p>
+ */
+final class TreeGrid {
+    static final int CELL_SIZE = 1 << 5;
+
+    private static final int CELL_SHIFT = 5;
+    private static final int MAX_CELLS = 1 << 22;
+
+    private final Flyweight.TreeStorage trees;
+    private int originX;
+    private int originY;
+    private int columns;
+    private int rows;
+    private int[][] cells = new int[0][];
+    private int[] counts = new int[0];
+
+    TreeGrid(Flyweight.TreeStorage trees) {
+        this.trees = trees;
+    }
+
+    /**
+     * Номера добавляются по возрастанию. Если ради дерева сетка выросла бы больше {@value #MAX_CELLS} ячеек,
+     * бросается {@link IllegalArgumentException}, и сетка не меняется.
+     */
+    void add(int tree, int x, int y) {
+        int cellX = x >> CELL_SHIFT;
+        int cellY = y >> CELL_SHIFT;
+        ensureCell(cellX, cellY);
+        int cell = (cellY - originY) * columns + cellX - originX;
+        int[] ids = cells[cell];
+        if (ids == null) {
+            ids = new int[4];
+            cells[cell] = ids;
+        } else if (counts[cell] == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            cells[cell] = ids;
+        }
+        ids[counts[cell]++] = tree;
+    }
+
+    /**
+     * Убрать последнее добавленное дерево, стоящее в (x, y).
+     */
+    void removeLast(int x, int y) {
+        counts[((y >> CELL_SHIFT) - originY) * columns + (x >> CELL_SHIFT) - originX]--;
+    }
+
+    /**
+     * Покрывает ли {@code [fromX, toX) × [fromY, toY)} всю сетку — тогда выбирать нечего.
+     */
+    boolean isWithin(int fromX, int fromY, int toX, int toY) {
+        return fromX <= originX << CELL_SHIFT && fromY <= originY << CELL_SHIFT
+                && toX >= originX + columns << CELL_SHIFT && toY >= originY + rows << CELL_SHIFT;
+    }
+
+    /**
+     * Номера деревьев с позицией в {@code [fromX, toX) × [fromY, toY)}, по возрастанию.
+     */
+    int[] find(int fromX, int fromY, int toX, int toY) {
+        if (fromX >= toX || fromY >= toY || columns == 0) {
+            return new int[0];
+        }
+        int firstColumn = Math.max(fromX >> CELL_SHIFT, originX) - originX;
+        int lastColumn = Math.min(toX - 1 >> CELL_SHIFT, originX + columns - 1) - originX;
+        int firstRow = Math.max(fromY >> CELL_SHIFT, originY) - originY;
+        int lastRow = Math.min(toY - 1 >> CELL_SHIFT, originY + rows - 1) - originY;
+        int[] found = new int[16];
+        int count = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = row * columns + column;
+                int[] ids = cells[cell];
+                // Внутренние ячейки целиком в области — координаты деревьев можно не читать
+                boolean inner = column > firstColumn && column < lastColumn && row > firstRow && row < lastRow;
+                for (int i = 0; i < counts[cell]; i++) {
+                    int tree = ids[i];
+                    if (!inner) {
+                        int x = trees.x(tree);
+                        int y = trees.y(tree);
+                        if (x < fromX || x >= toX || y < fromY || y >= toY) {
+                            continue;
+                        }
+                    }
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = tree;
+                }
+            }
+        }
+        // Ячейки идут по строкам, а номера нужны в порядке посадки
+        Arrays.sort(found, 0, count);
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * <p>Ближайшее к точке дерево или {@code -1}; из равноудалённых — с меньшим номером.</p>
+     * <p>Ячейки обходятся кольцами вокруг ячейки точки. Любое дерево в кольце {@code r} дальше {@code (r - 1) * CELL_SIZE}
+     * хотя бы по одной оси, поэтому обход останавливается, как только найденное дерево ближе этого.</p>
+     */
+    int nearest(int x, int y) {
+        if (columns == 0) {
+            return -1;
+        }
+        int cellX = x >> CELL_SHIFT;
+        int cellY = y >> CELL_SHIFT;
+        int lastX = originX + columns - 1;
+        int lastY = originY + rows - 1;
+        int maxRing = Math.max(Math.max(Math.abs(cellX - originX), Math.abs(cellX - lastX)),
+                Math.max(Math.abs(cellY - originY), Math.abs(cellY - lastY)));
+        int nearest = -1;
+        long nearestDistance = Long.MAX_VALUE;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (ring > 0) {
+                long bound = (long) (ring - 1) * CELL_SIZE + 1;
+                if (nearestDistance < bound * bound) {
+                    break;
+                }
+            }
+            for (int row = Math.max(cellY - ring, originY); row <= Math.min(cellY + ring, lastY); row++) {
+                boolean edgeRow = Math.abs(row - cellY) == ring;
+                int step = edgeRow || ring == 0 ? 1 : 2 * ring;
+                for (int column = cellX - ring; column <= cellX + ring; column += step) {
+                    if (column < originX || column > lastX) {
+                        continue;
+                    }
+                    int cell = (row - originY) * columns + column - originX;
+                    int[] ids = cells[cell];
+                    for (int i = 0; i < counts[cell]; i++) {
+                        int tree = ids[i];
+                        long distance = distance(x, y, trees.x(tree), trees.y(tree));
+                        if (distance < nearestDistance || distance == nearestDistance && tree < nearest) {
+                            nearest = tree;
+                            nearestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    static long distance(int fromX, int fromY, int toX, int toY) {
+        long dx = (long) toX - fromX;
+        long dy = (long) toY - fromY;
+        return dx * dx + dy * dy;
+    }
+
+    private void ensureCell(int cellX, int cellY) {
+        if (columns == 0) {
+            resize(cellX, cellY, 1, 1);
+            return;
+        }
+        if (cellX >= originX && cellX < originX + columns && cellY >= originY && cellY < originY + rows) {
+            return;
+        }
+        long fromX = originX;
+        long toX = (long) originX + columns;
+        long fromY = originY;
+        long toY = (long) originY + rows;
+        if (cellX < fromX) {
+            fromX = Math.min(cellX, fromX - columns);
+        } else if (cellX >= toX) {
+            toX = Math.max(cellX + 1L, toX + columns);
+        }
+        if (cellY < fromY) {
+            fromY = Math.min(cellY, fromY - rows);
+        } else if (cellY >= toY) {
+            toY = Math.max(cellY + 1L, toY + rows);
+        }
+        if ((toX - fromX) * (toY - fromY) > MAX_CELLS) {
+            throw new IllegalArgumentException("Tree at cell (" + cellX + ", " + cellY + ") is too far from the rest: "
+                    + "the grid would exceed " + MAX_CELLS + " cells");
+        }
+        resize((int) fromX, (int) fromY, (int) (toX - fromX), (int) (toY - fromY));
+    }
+
+    private void resize(int newOriginX, int newOriginY, int newColumns, int newRows) {
+        int[][] newCells = new int[newColumns * newRows][];
+        int[] newCounts = new int[newColumns * newRows];
+        for (int row = 0; row < rows; row++) {
+            int newRow = row + originY - newOriginY;
+            int shift = originX - newOriginX;
+            for (int column = 0; column < columns; column++) {
+                int cell = row * columns + column;
+                int newCell = newRow * newColumns + column + shift;
+                newCells[newCell] = cells[cell];
+                newCounts[newCell] = counts[cell];
+            }
+        }
+        cells = newCells;
+        counts = newCounts;
+        originX = newOriginX;
+        originY = newOriginY;
+        columns = newColumns;
+        rows = newRows;
+    }
+}
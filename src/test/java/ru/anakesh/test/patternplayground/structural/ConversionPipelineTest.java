@@ -0,0 +1,120 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class ConversionPipelineTest {
+    private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ConversionPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        // Очередь файлов на один файл и один читатель — чтобы submit легко упирался в заполненную очередь
+        pipeline = new ConversionPipeline(new Facade(), 1, 1, 1, 1, 4096);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        closeWithinTimeout();
+    }
+
+    @Test
+    public void closeReturnsAfterBlockedSubmitIsInterrupted() throws Exception {
+        // Чтение из именованного канала стоит, пока в него не откроют запись, — так читатель застревает на первом файле
+        Path stuck = folder.getRoot().toPath().resolve("stuck.ogg");
+        assumeTrue("mkfifo is not available", mkfifo(stuck));
+        Path other = Files.write(folder.getRoot().toPath().resolve("other.ogg"), new byte[]{1, 2, 3});
+
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread submitter = new Thread(() -> {
+            try {
+                pipeline.submit(stuck, folder.getRoot().toPath().resolve("stuck.mp4"), "mp4");
+                submitted.incrementAndGet();
+                pipeline.submit(other, folder.getRoot().toPath().resolve("other.mp4"), "mp4");
+                submitted.incrementAndGet();
+                // Первый файл у читателя, второй в очереди — третий ждёт места
+                pipeline.submit(other, folder.getRoot().toPath().resolve("third.mp4"), "mp4");
+                submitted.incrementAndGet();
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        submitter.start();
+        while (submitted.get() < 2 || submitter.getState() != Thread.State.WAITING) {
+            assertTrue("submitter finished without blocking", submitter.isAlive());
+            Thread.sleep(1);
+        }
+
+        submitter.interrupt();
+        submitter.join();
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedException);
+        assertEquals(2, submitted.get());
+
+        // Отпустить читателя: пустая запись даёт ему конец файла
+        new FileOutputStream(stuck.toFile()).close();
+        closeWithinTimeout();
+    }
+
+    @Test
+    public void closeReturnsAfterSubmitIsInterrupted() throws Exception {
+        Path source = Files.write(folder.getRoot().toPath().resolve("video.ogg"), new byte[]{1, 2, 3});
+        Thread.currentThread().interrupt();
+        try {
+            pipeline.submit(source, folder.getRoot().toPath().resolve("video.mp4"), "mp4");
+            fail("submit() ignored the interrupt");
+        } catch (InterruptedException expected) {
+            // Файл в очередь не попал и не должен держать close()
+        }
+        closeWithinTimeout();
+    }
+
+    @Test
+    public void submitRejectsSameSourceAndTarget() throws Exception {
+        byte[] bytes = {1, 2, 3};
+        Path source = Files.write(folder.getRoot().toPath().resolve("video.ogg"), bytes);
+        try {
+            pipeline.submit(source, source, "mp4");
+            fail("submit() accepted the source as its own target");
+        } catch (IllegalArgumentException expected) {
+            assertArrayEquals(bytes, Files.readAllBytes(source));
+        }
+    }
+
+    private void closeWithinTimeout() throws InterruptedException {
+        Thread closer = new Thread(pipeline::close);
+        closer.setDaemon(true);
+        closer.start();
+        closer.join(CLOSE_TIMEOUT_MILLIS);
+        assertFalse("close() did not return", closer.isAlive());
+    }
+
+    private static boolean mkfifo(Path path) throws InterruptedException {
+        try {
+            return new ProcessBuilder("mkfifo", path.toString()).start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.anakesh.test.patternplayground.structural;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PegMatcherTest {
+    // Больше порога, с которого раскладка делится на диапазоны
+    private static final int LARGE = 200_000;
+
+    private static ForkJoinPool single;
+    private static ForkJoinPool parallel;
+
+    @BeforeClass
+    public static void setUp() {
+        single = new ForkJoinPool(1);
+        parallel = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        single.shutdown();
+        parallel.shutdown();
+    }
+
+    @Test
+    public void parallelAssignmentEqualsSequential() {
+        Random random = new Random(42);
+        for (int round = 0; round < 30; round++) {
+            // Разные соотношения отверстий и колышков: от избытка отверстий до их нехватки
+            int holeCount = LARGE / 2 + random.nextInt(LARGE);
+            double[] holes = radii(random, holeCount, 1000);
+            double[] pegs = radii(random, LARGE, 1000);
+
+            PegMatcher.Matching sequential = new PegMatcher(single).match(holes, pegs);
+            PegMatcher.Matching chunked = new PegMatcher(parallel).match(holes, pegs);
+
+            assertArrayEquals("round " + round, assignment(sequential), assignment(chunked));
+            assertEquals("round " + round, sequential.matchedCount(), chunked.matchedCount());
+        }
+    }
+
+    @Test
+    public void parallelAssignmentEqualsSequentialWithDuplicatesAndNaN() {
+        Random random = new Random(7);
+        double[] holes = radii(random, LARGE, 50);
+        double[] pegs = radii(random, LARGE, 50);
+        for (int i = 0; i < 1000; i++) {
+            holes[random.nextInt(holes.length)] = Double.NaN;
+            pegs[random.nextInt(pegs.length)] = Double.NaN;
+        }
+
+        PegMatcher.Matching sequential = new PegMatcher(single).match(holes, pegs);
+        PegMatcher.Matching chunked = new PegMatcher(parallel).match(holes, pegs);
+
+        assertArrayEquals(assignment(sequential), assignment(chunked));
+    }
+
+    @Test
+    public void eachPegGetsSmallestFreeHoleItFits() {
+        Random random = new Random(1);
+        double[] holes = radii(random, LARGE, 1000);
+        double[] pegs = radii(random, LARGE + LARGE / 4, 1000);
+
+        PegMatcher.Matching matching = new PegMatcher(parallel).match(holes, pegs);
+
+        assertArrayEquals(greedy(holes, pegs), assignment(matching));
+    }
+
+    private static double[] radii(Random random, int n, int distinct) {
+        double[] radii = new double[n];
+        for (int i = 0; i < n; i++) {
+            radii[i] = random.nextInt(distinct) / 10.0;
+        }
+        return radii;
+    }
+
+    private static int[] assignment(PegMatcher.Matching matching) {
+        int[] holes = new int[matching.pegCount()];
+        for (int peg = 0; peg < holes.length; peg++) {
+            holes[peg] = matching.holeOf(peg);
+        }
+        return holes;
+    }
+
+    /**
+     * Та же жадная раскладка в лоб: колышки по возрастанию радиуса (при равных — по номеру),
+     * каждый в наименьшее свободное отверстие (при равных — с меньшим номером).
+     */
+    private static int[] greedy(double[] holes, double[] pegs) {
+        TreeMap<Double, ArrayDeque<Integer>> free = new TreeMap<>();
+        for (int hole = 0; hole < holes.length; hole++) {
+            free.computeIfAbsent(holes[hole], radius -> new ArrayDeque<>()).add(hole);
+        }
+        Integer[] pegOrder = IntStream.range(0, pegs.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(pegOrder, Comparator.comparingDouble(peg -> pegs[peg]));
+        int[] holeOfPeg = new int[pegs.length];
+        Arrays.fill(holeOfPeg, PegMatcher.UNMATCHED);
+        for (int peg : pegOrder) {
+            Map.Entry<Double, ArrayDeque<Integer>> smallest = free.ceilingEntry(pegs[peg]);
+            if (smallest != null) {
+                holeOfPeg[peg] = smallest.getValue().poll();
+                if (smallest.getValue().isEmpty()) {
+                    free.remove(smallest.getKey());
+                }
+            }
+        }
+        return holeOfPeg;
+    }
+}